@@ -0,0 +1,223 @@
+package seedu.addressbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * NOTE : =============================================================
+ * AddressBook keeps all of its methods private, so the benchmarks look
+ * them up through reflection once, during set up, and then call them
+ * through method handles. The cost of a method handle call is tiny and
+ * the same for every run, so results can still be compared across runs.
+ * ====================================================================
+ */
+
+/**
+ * Benchmarks the hot paths of {@link AddressBook} for address books of different sizes.
+ * Run with {@code ant bench}.
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AddressBookBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int personCount;
+
+    private MethodHandle executeCommand;
+    private MethodHandle getIdsOfPersonsMatchingAnyKeyword;
+    private MethodHandle decodePersonsFromStrings;
+    private MethodHandle writePersonsToTextFile;
+    private MethodHandle savePersonsToFile;
+    private MethodHandle loadPersonsFromFile;
+    private MethodHandle loadPersonsFromBinaryFile;
+    private MethodHandle writePersonsToBinaryFile;
+    private MethodHandle markPersonSlotsChanged;
+    private MethodHandle publishPersonSlotsSnapshot;
+
+    private ArrayList<?> persons;
+    private ArrayList<String> encodedPersons;
+    private Set<String> keywords;
+    private Set<String> prefixKeywords;
+    private Set<String> substringKeywords;
+    private Set<String> phoneKeywords;
+    private String findCommand;
+    private Path storageFile;
+    private Path fileToLoad;
+    private Path textFileToWrite;
+    private Path binaryStorageFile;
+    private Path binaryFileToLoad;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        // commands print their results; keep them off the benchmark's own output (AddressBook
+        // captures System.out when it is first used)
+        originalOut = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+
+        executeCommand = findMethod("executeCommand", String.class);
+        getIdsOfPersonsMatchingAnyKeyword = findMethod("getIdsOfPersonsMatchingAnyKeyword", Collection.class);
+        decodePersonsFromStrings = findMethod("decodePersonsFromStrings", ArrayList.class);
+        writePersonsToTextFile = findMethod("writePersonsToTextFile", ArrayList.class, Path.class);
+        savePersonsToFile = findMethod("savePersonsToFile", ArrayList.class, String.class);
+        loadPersonsFromFile = findMethod("loadPersonsFromFile", String.class);
+        loadPersonsFromBinaryFile = findMethod("loadPersonsFromBinaryFile", String.class);
+        writePersonsToBinaryFile = findMethod("writePersonsToBinaryFile", ArrayList.class, Path.class);
+        markPersonSlotsChanged = findMethod("markPersonSlotsChanged", int.class, int.class);
+        publishPersonSlotsSnapshot = findMethod("publishPersonSlotsSnapshot");
+
+        storageFile = Files.createTempFile("addressbook-benchmark", ".txt");
+        setStaticField("storageFilePath", storageFile.toString());
+
+        encodedPersons = new ArrayList<>();
+        for (int i = 0; i < personCount; i++) {
+            encodedPersons.add("Person Number" + i + " p/" + (10000000 + i) + " e/person" + i + "@example.com");
+        }
+        fileToLoad = Files.createTempFile("addressbook-benchmark-load", ".txt");
+        textFileToWrite = Files.createTempFile("addressbook-benchmark-write", ".txt");
+        Files.write(fileToLoad, encodedPersons);
+        persons = (ArrayList<?>) ((Optional<?>) decodePersonsFromStrings.invoke(encodedPersons)).get();
+        findMethod("initialiseAddressBookModel", ArrayList.class).invoke(persons);
+        publishPersonSlotsSnapshot.invoke();
+
+        binaryStorageFile = Files.createTempFile("addressbook-benchmark", ".bin");
+        binaryFileToLoad = Files.createTempFile("addressbook-benchmark-load", ".bin");
+        writePersonsToBinaryFile.invoke(persons, binaryFileToLoad);
+
+        final String keyword = "Number" + (personCount / 2);
+        keywords = new HashSet<>(Arrays.asList(keyword));
+        prefixKeywords = new HashSet<>(Arrays.asList(keyword.substring(0, keyword.length() - 1) + "*"));
+        substringKeywords = new HashSet<>(Arrays.asList("*" + keyword.substring(3, keyword.length() - 1) + "*"));
+        phoneKeywords = new HashSet<>(Arrays.asList("p/" + (10000000 + personCount / 2)));
+        findCommand = "find " + keyword;
+
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(originalOut);
+        Files.deleteIfExists(storageFile);
+        Files.deleteIfExists(fileToLoad);
+        Files.deleteIfExists(textFileToWrite);
+        Files.deleteIfExists(binaryStorageFile);
+        Files.deleteIfExists(binaryFileToLoad);
+    }
+
+    @Benchmark
+    public Object executeFindCommand() throws Throwable {
+        return executeCommand.invoke(findCommand);
+    }
+
+    @Benchmark
+    public Object executeListCommand() throws Throwable {
+        return executeCommand.invoke("list");
+    }
+
+    @Benchmark
+    public Object findPersonsByKeyword() throws Throwable {
+        return getIdsOfPersonsMatchingAnyKeyword.invoke(keywords);
+    }
+
+    @Benchmark
+    public Object findPersonsByPrefix() throws Throwable {
+        return getIdsOfPersonsMatchingAnyKeyword.invoke(prefixKeywords);
+    }
+
+    @Benchmark
+    public Object findPersonsBySubstring() throws Throwable {
+        return getIdsOfPersonsMatchingAnyKeyword.invoke(substringKeywords);
+    }
+
+    @Benchmark
+    public Object findPersonsByPhone() throws Throwable {
+        return getIdsOfPersonsMatchingAnyKeyword.invoke(phoneKeywords);
+    }
+
+    @Benchmark
+    public void publishSnapshotAfterChange() throws Throwable {
+        markPersonSlotsChanged.invoke(personCount / 2, personCount / 2 + 1);
+        publishPersonSlotsSnapshot.invoke();
+    }
+
+    @Benchmark
+    public Object decodePersons() throws Throwable {
+        return decodePersonsFromStrings.invoke(encodedPersons);
+    }
+
+    @Benchmark
+    public Object loadPersons() throws Throwable {
+        return loadPersonsFromFile.invoke(fileToLoad.toString());
+    }
+
+    @Benchmark
+    public void writeTextPersons() throws Throwable {
+        writePersonsToTextFile.invoke(persons, textFileToWrite);
+    }
+
+    @Benchmark
+    public void savePersons() throws Throwable {
+        savePersonsToFile.invoke(persons, storageFile.toString());
+    }
+
+    @Benchmark
+    public Object loadBinaryPersons() throws Throwable {
+        return loadPersonsFromBinaryFile.invoke(binaryFileToLoad.toString());
+    }
+
+    @Benchmark
+    public void saveBinaryPersons() throws Throwable {
+        writePersonsToBinaryFile.invoke(persons, binaryStorageFile);
+    }
+
+    private static MethodHandle findMethod(String name, Class<?>... parameterTypes) throws ReflectiveOperationException {
+        final Method method = AddressBook.class.getDeclaredMethod(name, parameterTypes);
+        method.setAccessible(true);
+        return MethodHandles.lookup().unreflect(method);
+    }
+
+    private static void setStaticField(String name, Object value) throws ReflectiveOperationException {
+        final Field field = AddressBook.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(null, value);
+    }
+}
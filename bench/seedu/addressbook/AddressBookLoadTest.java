@@ -0,0 +1,180 @@
+package seedu.addressbook;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/*
+ * NOTE : =============================================================
+ * The load test starts the address book in server mode inside its own
+ * JVM, on a free port of the local host, and then drives it with many
+ * clients at once over loopback connections. Each client sends one
+ * command at a time and waits for the whole reply (which ends with a
+ * divider line) before sending the next, so the latency of a command
+ * includes the round trip through the socket.
+ * ====================================================================
+ */
+
+/**
+ * Load test of the server mode of {@link AddressBook}: reports the throughput and the latency percentiles of
+ * a mix of find, list and add commands sent by concurrent clients.
+ * Run with {@code ant loadtest -Dloadtest.args="CLIENTS REQUESTS_PER_CLIENT PERSONS WRITE_PERCENT LIST_PAGE_SIZE"},
+ * followed by any more program options to start the address book with, e.g. {@code --stats}.
+ **/
+public class AddressBookLoadTest {
+
+    private static final String REPLY_END = "|| ===================================================";
+    private static final int CONNECT_ATTEMPTS = 100;
+    private static final int CONNECT_RETRY_MILLIS = 100;
+
+    public static void main(String[] args) throws Exception {
+        final int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        final int requestsPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        final int personCount = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        final int writePercent = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        final int listPageSize = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+        final List<String> extraProgramArgs = Arrays.asList(args).subList(Math.min(args.length, 5), args.length);
+
+        final Path storageFile = Files.createTempFile("addressbook-loadtest", ".txt");
+        final List<String> encodedPersons = new ArrayList<>();
+        for (int i = 0; i < personCount; i++) {
+            encodedPersons.add("Person Number" + i + " p/" + (10000000 + i) + " e/person" + i + "@example.com");
+        }
+        Files.write(storageFile, encodedPersons);
+
+        final int port = findFreePort();
+        final List<String> programArgs = new ArrayList<>(extraProgramArgs);
+        programArgs.addAll(Arrays.asList("--server=" + port, "--journal", storageFile.toString()));
+        final Thread server = new Thread(() -> AddressBook.main(programArgs.toArray(new String[0])),
+                                         "addressbook-server");
+        server.setDaemon(true);
+        server.start();
+        connect(port).close(); // wait until the server is up
+
+        final long[][] readLatencies = new long[clientCount][];
+        final long[][] writeLatencies = new long[clientCount][];
+        final AtomicInteger nextAddedPerson = new AtomicInteger();
+        final Thread[] clients = new Thread[clientCount];
+        final long startTime = System.nanoTime();
+        for (int c = 0; c < clientCount; c++) {
+            final int client = c;
+            clients[c] = new Thread(() -> {
+                final long[] latencies = new long[requestsPerClient];
+                final boolean[] isWrite = new boolean[requestsPerClient];
+                runClient(port, personCount, writePercent, listPageSize, nextAddedPerson, new Random(client),
+                          latencies, isWrite);
+                readLatencies[client] = IntStream.range(0, requestsPerClient).filter(i -> !isWrite[i])
+                                                 .mapToLong(i -> latencies[i]).toArray();
+                writeLatencies[client] = IntStream.range(0, requestsPerClient).filter(i -> isWrite[i])
+                                                  .mapToLong(i -> latencies[i]).toArray();
+            });
+            clients[c].start();
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        final long elapsedNanos = System.nanoTime() - startTime;
+
+        System.out.printf("%d clients x %d requests, %d persons, %d%% writes, list pages of %d, options %s%n",
+                          clientCount, requestsPerClient, personCount, writePercent, listPageSize, extraProgramArgs);
+        System.out.printf("throughput: %.0f requests/s%n", clientCount * requestsPerClient * 1e9 / elapsedNanos);
+        printLatencies("read", readLatencies);
+        printLatencies("write", writeLatencies);
+
+        Files.deleteIfExists(storageFile);
+        System.exit(0);
+    }
+
+    /**
+     * Sends the given number of commands over a connection of its own, recording the latency of each.
+     * Reads are a find by a name word or a page of the list; writes add a new person.
+     */
+    private static void runClient(int port, int personCount, int writePercent, int listPageSize,
+                                  AtomicInteger nextAddedPerson, Random random, long[] latencies, boolean[] isWrite) {
+        try (Socket socket = connect(port);
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            readReply(in); // welcome message
+            for (int i = 0; i < latencies.length; i++) {
+                final String command;
+                isWrite[i] = random.nextInt(100) < writePercent;
+                if (isWrite[i]) {
+                    final int added = nextAddedPerson.getAndIncrement();
+                    command = "add Added Person" + added + " p/" + (50000000 + added) + " e/added" + added + "@example.com";
+                } else if (random.nextBoolean()) {
+                    command = "find Number" + random.nextInt(personCount);
+                } else {
+                    command = "list " + listPageSize;
+                }
+                final long start = System.nanoTime();
+                out.println(command);
+                readReply(in);
+                latencies[i] = System.nanoTime() - start;
+            }
+            out.println("exit");
+        } catch (IOException ioe) {
+            throw new RuntimeException(ioe);
+        }
+    }
+
+    private static void readReply(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.equals(REPLY_END)) {
+                return;
+            }
+        }
+        throw new IOException("Server closed the connection");
+    }
+
+    private static Socket connect(int port) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return new Socket(InetAddress.getLoopbackAddress(), port);
+            } catch (IOException ioe) {
+                if (attempt == CONNECT_ATTEMPTS) {
+                    throw ioe;
+                }
+                try {
+                    Thread.sleep(CONNECT_RETRY_MILLIS);
+                } catch (InterruptedException ie) {
+                    throw new IOException(ie);
+                }
+            }
+        }
+    }
+
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void printLatencies(String kind, long[][] latencies) {
+        final long[] sorted = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        if (sorted.length == 0) {
+            return;
+        }
+        System.out.printf("%s latency (us): p50 %d  p90 %d  p99 %d  max %d%n", kind,
+                          percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+                          sorted[sorted.length - 1] / 1000);
+    }
+
+    private static long percentile(long[] sortedNanos, int percent) {
+        return sortedNanos[Math.min(sortedNanos.length - 1, sortedNanos.length * percent / 100)] / 1000;
+    }
+}
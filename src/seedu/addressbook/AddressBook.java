@@ -7,22 +7,62 @@ package seedu.addressbook;
  * ====================================================================
  */
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 /*
  * NOTE : =============================================================
@@ -68,35 +108,83 @@ public class AddressBook {
      */
     private static final String MESSAGE_ADDED = "New person added recently: %1$s, Phone: %2$s, Email: %3$s";
     private static final String MESSAGE_ADDRESSBOOK_CLEARED = "Address book has been cleared!";
+    private static final String MESSAGE_BATCH_ALREADY_STARTED = "A batch has already been started";
+    private static final String MESSAGE_BATCH_COMMIT_FAILED = "Unable to write to file: %1$s, %2$d change(s) rolled back";
+    private static final String MESSAGE_BATCH_COMMITTED = "Batch committed, %1$d change(s) saved";
+    private static final String MESSAGE_BATCH_NOT_STARTED = "No batch has been started";
+    private static final String MESSAGE_BATCH_ROLLED_BACK = "Batch rolled back, %1$d change(s) discarded";
+    private static final String MESSAGE_BATCH_STARTED = "Batch started, changes will be saved on commit";
     private static final String MESSAGE_COMMAND_HELP = "%1$s: %2$s";
+    private static final String MESSAGE_CONFLICTING_PROGRAM_OPTIONS = "Program options %1$s and %2$s cannot be used together";
     private static final String MESSAGE_COMMAND_HELP_PARAMETERS = "\tParameters: %1$s";
     private static final String MESSAGE_COMMAND_HELP_EXAMPLE = "\tExample: %1$s";
     private static final String MESSAGE_UPDATE_PERSON_SUCCESS = "Updated Person: %1$s";
     private static final String MESSAGE_DELETE_PERSON_SUCCESS = "Deleted Person: %1$s";
-    private static final String MESSAGE_DISPLAY_PERSON_DATA = "%1$s  Phone Number: %2$s  Email: %3$s";
-    private static final String MESSAGE_DISPLAY_LIST_ELEMENT_INDEX = "%1$d. ";
+    // These are the parts that a person's data is displayed with, in the form "NAME  Phone Number: PHONE  Email: EMAIL"
+    private static final String DISPLAY_PERSON_PHONE_LABEL = "  Phone Number: ";
+    private static final String DISPLAY_PERSON_EMAIL_LABEL = "  Email: ";
+    private static final String DISPLAY_LIST_ELEMENT_INDEX_SUFFIX = ". ";
     private static final String MESSAGE_GOODBYE = "Exiting Address Book... Good bye!";
     private static final String MESSAGE_INVALID_COMMAND_FORMAT = "Invalid command format: %1$s " + LS + "%2$s";
+    private static final String MESSAGE_DUPLICATE_PERSON = "Another person already has the same %1$s: %2$s";
+    private static final String MESSAGE_INVALID_DURABILITY = "Durability must be none, commit or periodic: %1$s";
+    private static final String MESSAGE_INVALID_BINARY_STORAGE_FILE = "Storage file is not a binary address book file: %1$s";
+    private static final String MESSAGE_INVALID_BINARY_STORAGE_FILE_CONTENT = "Storage file has invalid content at person %1$d";
     private static final String MESSAGE_INVALID_FILE = "The given file name [%1$s] is not a valid file name!";
+    private static final String MESSAGE_INVALID_JOURNAL_CONTENT = "Journal file has invalid content: %1$s";
     private static final String MESSAGE_INVALID_PROGRAM_ARGS = "Too many parameters! Correct program argument format:"
-                                                            + LS + "\tjava AddressBook"
-                                                            + LS + "\tjava AddressBook [custom storage file path]";
+                                                            + LS + "\tjava AddressBook [--journal | --mapped | --async] [--binary] [--durability=LEVEL] [--unique=PROPERTIES] [--server=PORT] [--stats[=FILE]] [--lazy]"
+                                                            + LS + "\tjava AddressBook [--journal | --mapped | --async] [--binary] [--durability=LEVEL] [--unique=PROPERTIES] [--server=PORT] [--stats[=FILE]] [--lazy] [custom storage file path]"
+                                                            + LS + "\tjava AddressBook --convert [source file path] [target file path]";
     private static final String MESSAGE_INVALID_PERSON_DISPLAYED_INDEX = "The person index provided is invalid";
-    private static final String MESSAGE_INVALID_STORAGE_FILE_CONTENT = "Storage file has invalid content";
+    private static final String MESSAGE_INVALID_UNIQUE_PROPERTY = "Unique properties must be name, phone or email: %1$s";
+    private static final String MESSAGE_INVALID_PROGRAM_OPTION_VALUE = "Program option must be given a positive number: %1$s";
+    private static final String MESSAGE_INVALID_STORAGE_FILE_CONTENT = "Storage file has invalid content at line %1$d";
     private static final String MESSAGE_PERSON_NOT_IN_ADDRESSBOOK = "Person could not be found in address book";
     private static final String MESSAGE_ERROR_CREATING_STORAGE_FILE = "Error: unable to create file: %1$s";
     private static final String MESSAGE_ERROR_MISSING_STORAGE_FILE = "Storage file missing: %1$s";
+    private static final String MESSAGE_EXPORTED = "%1$d person(s) exported to %2$s";
+    private static final String MESSAGE_EXPORT_WRITE_FAILED = "Unable to write to file: %1$s";
+    private static final String MESSAGE_EXPORT_TO_STORAGE_FILE = "Cannot export to the storage file or the files kept with it: %1$s";
+    private static final String MESSAGE_IMPORTED = "%1$d person(s) imported from %2$s";
+    private static final String MESSAGE_IMPORT_DUPLICATE_LINES = "Duplicate person(s) not imported, at line(s): %1$s";
+    private static final String MESSAGE_IMPORT_INVALID_LINES = "Invalid line(s) not imported: %1$s";
+    private static final String MESSAGE_IMPORT_READ_FAILED = "Unable to read file to import: %1$s";
     private static final String MESSAGE_ERROR_READING_FROM_FILE = "Unexpected error: unable to read from file: %1$s";
     private static final String MESSAGE_ERROR_WRITING_TO_FILE = "Unexpected error: unable to write to file: %1$s";
     private static final String MESSAGE_PERSONS_FOUND_OVERVIEW = "%1$d persons found!";
+    private static final String MESSAGE_PERSONS_LEFT_TO_LIST = "%1$d more persons, enter '%2$s' to list them";
+    private static final String MESSAGE_SERVER_FAILED = "Unable to serve on port: %1$d";
+    private static final String MESSAGE_SERVER_STARTED = "Serving address book on port: %1$d";
+    private static final String MESSAGE_STATS_DISABLED = "Statistics are not being recorded; start the program with --stats to record them";
+    private static final String MESSAGE_STATS_OVERVIEW = "%1$d commands executed in %2$.1f seconds since start up, %3$.1f commands/s";
+    private static final String MESSAGE_STATS_TABLE_HEADER = "%1$-16s %2$8s %3$10s %4$10s %5$10s %6$10s %7$10s %8$10s";
+    private static final String MESSAGE_STATS_TABLE_ROW = "%1$-16s %2$8d %3$10.3f %4$10.3f %5$10.3f %6$10.3f %7$10.3f %8$10.3f";
+    private static final String MESSAGE_STATS_TABLE_SIZE_COLUMN = " %1$12s";
+    private static final String MESSAGE_STATS_WRITE_FAILED = "Unable to write statistics to file: %1$s";
+    private static final String MESSAGE_STORAGE_FILE_CONVERTED = "Converted %1$d persons from %2$s to %3$s";
     private static final String MESSAGE_STORAGE_FILE_CREATED = "Created new empty storage file: %1$s";
     private static final String MESSAGE_WELCOME = "Welcome to your Address Book!";
+    private static final String MESSAGE_WAITING_FOR_STORAGE_LOAD = "Still loading the address book (%1$d persons so far); "
+                                                                + "the command will be executed once all are loaded";
     private static final String MESSAGE_USING_DEFAULT_FILE = "Using default storage file : " + DEFAULT_STORAGE_FILEPATH;
 
     // These are the prefix strings to define the data type of a command parameter
     private static final String PERSON_DATA_PREFIX_PHONE = "p/";
     private static final String PERSON_DATA_PREFIX_EMAIL = "e/";
 
+    /*
+     * NOTE : =============================================================
+     * String#matches and String#split compile their regular expression
+     * every time they are called. The patterns below are used for every
+     * line of the storage file, so they are compiled only once instead.
+     * ====================================================================
+     */
+    private static final Pattern PERSON_NAME_PATTERN = Pattern.compile("[\\w\\s]+");
+    private static final Pattern PERSON_PHONE_PATTERN = Pattern.compile("\\d+");
+    private static final Pattern PERSON_EMAIL_PATTERN = Pattern.compile("\\S+@\\S+\\.\\S+");
+    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+
     private static final String PERSON_STRING_REPRESENTATION = "%1$s " // name
                                                             + PERSON_DATA_PREFIX_PHONE + "%2$s " // phone
                                                             + PERSON_DATA_PREFIX_EMAIL + "%3$s"; // email
@@ -108,14 +196,24 @@ public class AddressBook {
     private static final String COMMAND_ADD_EXAMPLE = COMMAND_ADD_WORD + " John Doe p/98765432 e/johnd@gmail.com";
 
     private static final String COMMAND_FIND_WORD = "find";
+    private static final String FIND_WILDCARD = "*";
     private static final String COMMAND_FIND_DESC = "Finds all persons whose names contain any of the specified "
-                                        + "keywords (case-sensitive) and displays them as a list with index numbers.";
+                                        + "keywords (case-sensitive) and displays them as a list with index numbers. "
+                                        + "A keyword ending with " + FIND_WILDCARD + " matches the start of a word, "
+                                        + "one starting with " + FIND_WILDCARD + " matches the end of a word, "
+                                        + "and one with both matches any part of a word. "
+                                        + "A keyword starting with " + PERSON_DATA_PREFIX_PHONE + " or "
+                                        + PERSON_DATA_PREFIX_EMAIL + " matches the exact phone number or email instead.";
     private static final String COMMAND_FIND_PARAMETERS = "KEYWORD [MORE_KEYWORDS]";
-    private static final String COMMAND_FIND_EXAMPLE = COMMAND_FIND_WORD + " alice bob charlie";
+    private static final String COMMAND_FIND_EXAMPLE = COMMAND_FIND_WORD + " alice bob* *arli* "
+                                                     + PERSON_DATA_PREFIX_PHONE + "98765432";
 
     private static final String COMMAND_LIST_WORD = "list";
-    private static final String COMMAND_LIST_DESC = "Displays all persons as a list with index numbers.";
-    private static final String COMMAND_LIST_EXAMPLE = COMMAND_LIST_WORD;
+    private static final String COMMAND_LIST_DESC = "Displays all persons as a list with index numbers, "
+                                                  + "or only a page of the given number of persons at a time.";
+    private static final String COMMAND_LIST_NEXT_PAGE_ARG = "next";
+    private static final String COMMAND_LIST_PARAMETERS = "[PAGE_SIZE | " + COMMAND_LIST_NEXT_PAGE_ARG + "]";
+    private static final String COMMAND_LIST_EXAMPLE = COMMAND_LIST_WORD + " 200";
 
     private static final String COMMAND_UPDATE_WORD = "update";
     private static final String COMMAND_UPDATE_DESC = "Updates a person's information identified by the index "
@@ -135,6 +233,59 @@ public class AddressBook {
     private static final String COMMAND_CLEAR_DESC = "Clears address book permanently.";
     private static final String COMMAND_CLEAR_EXAMPLE = COMMAND_CLEAR_WORD;
 
+    /*
+     * A CSV file holds one person per line as the name, phone and email separated by commas, optionally
+     * after the header line below. Names and phone numbers cannot contain commas, so an email is everything
+     * after the second comma.
+     */
+    private static final String CSV_FILE_EXTENSION = ".csv";
+    private static final String CSV_FIELD_SEPARATOR = ",";
+    private static final String CSV_HEADER = "name,phone,email";
+    private static final String IMPORT_LINE_NUMBER_SEPARATOR = ", ";
+    private static final String EXPORT_LISTED_ONLY_WORD = "listed";
+
+    private static final String COMMAND_IMPORT_WORD = "import";
+    private static final String COMMAND_IMPORT_DESC = "Adds all persons in a file to the address book, saving them "
+                                                    + "all at once. Each line of the file holds a person, in the "
+                                                    + "format of the add command or, for a file ending with "
+                                                    + CSV_FILE_EXTENSION + ", as " + CSV_HEADER + ".";
+    private static final String COMMAND_IMPORT_PARAMETER = "FILE";
+    private static final String COMMAND_IMPORT_EXAMPLE = COMMAND_IMPORT_WORD + " contacts.csv";
+
+    /*
+     * An exported JSON file holds an array with an object per person, whose fields are named after the
+     * person properties (in lower case), e.g. [{"name":"John Doe","phone":"98765432","email":"johnd@gmail.com"}].
+     */
+    private static final String JSON_FILE_EXTENSION = ".json";
+
+    private static final String COMMAND_EXPORT_WORD = "export";
+    private static final String COMMAND_EXPORT_DESC = "Writes all persons, or only those in the last find/list call "
+                                                    + "if " + EXPORT_LISTED_ONLY_WORD + " is given, to a file in the "
+                                                    + "given format: csv, json, or native (the format of the add "
+                                                    + "command). The format is chosen by the file extension if "
+                                                    + "not given.";
+    private static final String COMMAND_EXPORT_PARAMETER = "FILE [csv|json|native] [" + EXPORT_LISTED_ONLY_WORD + "]";
+    private static final String COMMAND_EXPORT_EXAMPLE = COMMAND_EXPORT_WORD + " contacts.json";
+
+    private static final String COMMAND_BEGIN_WORD = "begin";
+    private static final String COMMAND_BEGIN_DESC = "Starts a batch: changes are kept in memory until the batch is "
+                                                    + "committed, and saved to file all at once.";
+    private static final String COMMAND_BEGIN_EXAMPLE = COMMAND_BEGIN_WORD;
+
+    private static final String COMMAND_COMMIT_WORD = "commit";
+    private static final String COMMAND_COMMIT_DESC = "Saves all changes made since the batch was started.";
+    private static final String COMMAND_COMMIT_EXAMPLE = COMMAND_COMMIT_WORD;
+
+    private static final String COMMAND_ROLLBACK_WORD = "rollback";
+    private static final String COMMAND_ROLLBACK_DESC = "Discards all changes made since the batch was started.";
+    private static final String COMMAND_ROLLBACK_EXAMPLE = COMMAND_ROLLBACK_WORD;
+
+    private static final String COMMAND_STATS_WORD = "stats";
+    private static final String COMMAND_STATS_DESC = "Shows how many times each command was executed and how long it took "
+                                                    + "(mean and percentiles, in milliseconds), and how long loading "
+                                                    + "and saving the data took. Requires the --stats program option.";
+    private static final String COMMAND_STATS_EXAMPLE = COMMAND_STATS_WORD;
+
     private static final String COMMAND_HELP_WORD = "help";
     private static final String COMMAND_HELP_DESC = "Shows program usage instructions.";
     private static final String COMMAND_HELP_EXAMPLE = COMMAND_HELP_WORD;
@@ -143,23 +294,214 @@ public class AddressBook {
     private static final String COMMAND_EXIT_DESC = "Exits the program.";
     private static final String COMMAND_EXIT_EXAMPLE = COMMAND_EXIT_WORD;
 
+    /**
+     * Words of the commands that do not change the model; see {@link #MODEL_READ_WRITE_LOCK}.
+     */
+    private static final Set<String> READ_ONLY_COMMAND_WORDS = new HashSet<>(Arrays.asList(
+            COMMAND_FIND_WORD, COMMAND_LIST_WORD, COMMAND_EXPORT_WORD, COMMAND_STATS_WORD, COMMAND_HELP_WORD));
+
+    /**
+     * Words of the commands that wait for all persons to be loaded from the storage file, if it is being loaded
+     * in the background; see {@link #PROGRAM_OPTION_LAZY}. The add command waits only in some cases.
+     */
+    private static final Set<String> COMMAND_WORDS_NEEDING_LOADED_DATA = new HashSet<>(Arrays.asList(
+            COMMAND_ADD_WORD, COMMAND_FIND_WORD, COMMAND_LIST_WORD, COMMAND_UPDATE_WORD, COMMAND_DELETE_WORD,
+            COMMAND_CLEAR_WORD, COMMAND_IMPORT_WORD, COMMAND_EXPORT_WORD, COMMAND_BEGIN_WORD, COMMAND_COMMIT_WORD,
+            COMMAND_ROLLBACK_WORD, COMMAND_EXIT_WORD));
+
     private static final String DIVIDER = "===================================================";
 
+    /**
+     * Program argument that turns on the journaled storage mode.
+     */
+    private static final String PROGRAM_OPTION_JOURNAL = "--journal";
+
+    /*
+     * In journaled storage mode, every change to the address book is appended as one record to a journal
+     * file next to the storage file, instead of rewriting the whole storage file. The journal is replayed
+     * on top of the storage file at start up and compacted into it at start up, on exit and whenever it
+     * grows beyond the threshold below.
+     */
+    private static final String JOURNAL_FILE_SUFFIX = ".journal";
+    private static final String COMPACTION_FILE_SUFFIX = ".tmp";
+    private static final int JOURNAL_COMPACTION_THRESHOLD = 10000;
+
+    // These are the markers that define the type of a journal record
+    private static final String JOURNAL_RECORD_ADD = "A";
+    private static final String JOURNAL_RECORD_UPDATE = "U";
+    private static final String JOURNAL_RECORD_DELETE = "D";
+    private static final String JOURNAL_RECORD_CLEAR = "C";
+    private static final String JOURNAL_RECORD_SEPARATOR = " ";
+
+    /**
+     * Program argument that turns on the memory-mapped storage mode.
+     */
+    private static final String PROGRAM_OPTION_MAPPED = "--mapped";
+
+    /*
+     * In memory-mapped storage mode, the storage file is mapped into memory and holds one fixed-size record
+     * per person slot: the person's string representation padded with spaces up to a line break, or only
+     * spaces for an empty slot. A change overwrites only the record of the changed slot. When a person does
+     * not fit, the file is rewritten with records of twice the size. When the file is full, its number of
+     * records is doubled; the empty records at its end are room for persons yet to be added.
+     */
+    private static final int MAPPED_STORAGE_INITIAL_RECORD_SIZE = 128;
+    private static final int MAPPED_STORAGE_INITIAL_RECORD_COUNT = 64;
+    private static final byte MAPPED_RECORD_PADDING = ' ';
+    private static final byte MAPPED_RECORD_END = '\n';
+
+    /**
+     * Program argument that turns on the asynchronous persistence mode.
+     */
+    private static final String PROGRAM_OPTION_ASYNC = "--async";
+
+    /*
+     * In asynchronous persistence mode, changes are saved by a background writer thread, which saves all data
+     * to the storage file at most the given number of milliseconds after a change is made, or as soon as the
+     * given number of changes have been made. Changes made in the meantime are saved with a single write.
+     * Both can be set with program arguments of the form --async-interval=MILLISECONDS.
+     */
+    private static final String PROGRAM_OPTION_ASYNC_INTERVAL = "--async-interval";
+    private static final String PROGRAM_OPTION_ASYNC_THRESHOLD = "--async-threshold";
+    private static final char PROGRAM_OPTION_VALUE_SEPARATOR = '=';
+    private static final int DEFAULT_ASYNC_FLUSH_INTERVAL = 1000;
+    private static final int DEFAULT_ASYNC_FLUSH_THRESHOLD = 1000;
+
+    /*
+     * The durability level, set with a program argument of the form --durability=LEVEL, decides when saved
+     * changes are forced to disk (fsync): never (none, the operating system writes them out in its own time),
+     * as part of every save (commit), or at most the given number of milliseconds after a save (periodic).
+     * The interval can be set with a program argument of the form --durability-interval=MILLISECONDS.
+     */
+    private static final String PROGRAM_OPTION_DURABILITY = "--durability";
+    private static final String PROGRAM_OPTION_DURABILITY_INTERVAL = "--durability-interval";
+    private static final int DEFAULT_SYNC_INTERVAL = 1000;
+
+    /*
+     * No two persons may have the same value for any of the properties given in a program argument of the
+     * form --unique=PROPERTY[,MORE_PROPERTIES], e.g. --unique=phone,email. Adding or updating a person who
+     * would share one of them with another person is rejected.
+     */
+    private static final String PROGRAM_OPTION_UNIQUE = "--unique";
+    private static final String PROGRAM_OPTION_VALUE_LIST_SEPARATOR = ",";
+
+    /*
+     * A snapshot of all data is written to a temporary file with the suffix below, which then replaces the
+     * file being saved to in a single step.
+     */
+    private static final String SNAPSHOT_FILE_SUFFIX = ".new";
+
+    /**
+     * Program argument that selects the binary storage format, also selected by the file extension below.
+     */
+    private static final String PROGRAM_OPTION_BINARY = "--binary";
+
+    /**
+     * Program argument that converts the storage file given first into the storage file given second.
+     */
+    private static final String PROGRAM_OPTION_CONVERT = "--convert";
+
+    /*
+     * In server mode, set with a program argument of the form --server=PORT, the address book serves users
+     * connecting to the given port of the local host instead of reading commands from the console. Each user
+     * sends commands as lines of text and is sent the same messages the console would show, so the reply to
+     * every command ends with a divider line. The exit command ends only the user's own session.
+     */
+    private static final String PROGRAM_OPTION_SERVER = "--server";
+    private static final int SERVER_CONNECTION_BACKLOG = 128;
+
+    /*
+     * With a program argument of --stats, the number of times each command is executed and how long it takes
+     * (including any wait for another user's command), and how long storage operations take and how many
+     * bytes they read or write, are recorded and shown by the stats command. With a program argument of the
+     * form --stats=FILE, they are also written to the given file when the program exits.
+     * Durations are counted in histograms with 2 to the power of the given number of buckets for every power
+     * of two nanoseconds, so percentiles are accurate to about 3%, for durations of up to about half an hour.
+     */
+    private static final String PROGRAM_OPTION_STATS = "--stats";
+    private static final int LATENCY_HISTOGRAM_SUB_BUCKET_BITS = 5;
+    private static final int LATENCY_HISTOGRAM_MAX_VALUE_BITS = 41;
+    private static final String STATS_OTHER_COMMANDS = "(invalid)";
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /*
+     * With a program argument of --lazy, the storage file is loaded by a background thread, and the user can
+     * enter commands right away. Persons added before loading finishes are added after all loaded persons,
+     * and saved once loading finishes, unless some person properties must be unique or every change must be
+     * on disk when its command returns; then the add command waits, as do all commands that need all persons
+     * (see COMMAND_WORDS_NEEDING_LOADED_DATA).
+     */
+    private static final String PROGRAM_OPTION_LAZY = "--lazy";
+
+    /*
+     * A binary storage file starts with a header made of the magic number below ("ABK" and a zero byte), the
+     * format version and the number of persons, each a 4-byte integer. The persons follow, each as its name,
+     * phone and email.
+     */
+    private static final String BINARY_STORAGE_FILE_EXTENSION = ".bin";
+    private static final int BINARY_STORAGE_MAGIC_NUMBER = 0x41424B00;
+    private static final int BINARY_STORAGE_VERSION = 1;
+
+    /*
+     * The storage file is read in chunks of lines which are decoded in parallel. At most the given number of
+     * chunks per available processor are read ahead of the chunks already decoded, to bound memory use.
+     */
+    private static final int STORAGE_LOAD_CHUNK_SIZE = 10000;
+    private static final int STORAGE_LOAD_PENDING_CHUNKS_PER_PROCESSOR = 2;
+
 
-    /* We use a HashMap to store details of a single person.
-     * The enum given below are the keys for the different data elements of a person
-     * used by the internal HashMap<String, String> storage format.
-     * For example, a person with name "Smith" is stored as the pair {"name", "Smith"}.
+    /* We use a String array to store details of a single person.
+     * The enum given below names the different data elements of a person; the ordinal of each
+     * constant is the position of that data element in the internal String[] storage format.
+     * For example, a person with name "Smith" has "Smith" stored at position NAME.ordinal().
      */
     private enum PersonProperty {
         NAME, PHONE, EMAIL
     }
 
+    /**
+     * Formats persons can be exported in.
+     */
+    private enum ExportFormat {
+        CSV, JSON, NATIVE
+    }
+
+    /**
+     * Levels of durability of saved changes; see {@link #PROGRAM_OPTION_DURABILITY}.
+     */
+    private enum Durability {
+        NONE, COMMIT, PERIODIC
+    }
+
+    /**
+     * Operations on the storage files whose durations and sizes are recorded; see {@link #PROGRAM_OPTION_STATS}.
+     */
+    private enum StorageOperation {
+        LOAD, SAVE, JOURNAL_APPEND, MAPPED_WRITE, MAPPED_REWRITE
+    }
+
     /**
      * Offset required to convert between 1-indexing and 0-indexing.
      */
     private static final int DISPLAYED_INDEX_OFFSET = 1;
 
+    /**
+     * Number of persons shown on each page if 'list next' is used before any page size was given.
+     */
+    private static final int DEFAULT_LIST_PAGE_SIZE = 200;
+
+    /**
+     * End of a person listing that always covers the whole full list.
+     */
+    private static final int UNBOUNDED_LISTING_END = Integer.MAX_VALUE;
+
+    /**
+     * Snapshots of the person slots are made of chunks of 2 to the power of this number of slots.
+     */
+    private static final int PERSON_SLOT_CHUNK_BITS = 10;
+    private static final int PERSON_SLOT_CHUNK_SIZE = 1 << PERSON_SLOT_CHUNK_BITS;
+
     /**
      * If the first non-whitespace character in a user's input line is this, that line will be ignored.
      */
@@ -174,848 +516,4248 @@ public class AddressBook {
     private static final Scanner SCANNER = new Scanner(System.in);
 
     /*
-     * @deprecated We have chosen HashMap rather than ArrayList for now.
-     *
+     * NOTE : =============================================================
+     * System.out is flushed after every line printed, which is slow when
+     * a script is run or a long list is shown. Hence all output goes
+     * through the buffered stream below instead. It is flushed before the
+     * program waits for the user to enter a command, i.e. unless the next
+     * command has already been entered (as when a script is given through
+     * I/O redirection), and when the program exits.
+     * ====================================================================
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+    private static final PrintStream OUTPUT = new PrintStream(new BufferedOutputStream(System.out, OUTPUT_BUFFER_SIZE));
+
+    /*
      * NOTE : =============================================================================================
      * Note that the type of the variable below can also be declared as List<String[]>, as follows:
-     *    private static final List<String[]> ALL_PERSONS = new ArrayList<>()
+     *    private static final List<String[]> PERSON_SLOTS = new ArrayList<>()
      * That is because List is an interface implemented by the ArrayList class.
      * In this code we use ArrayList instead because we wanted to to stay away from advanced concepts
      * such as interface inheritance.
      * ====================================================================================================
      */
 
+    /*
+     * NOTE : =============================================================
+     * Every person gets an ID when added to the address book. IDs are
+     * never reused, so a listing shown to the user can refer to persons
+     * by ID and still find exactly the person that was shown, even if
+     * another person has the same data. Persons are kept in slots; a
+     * deleted person's slot is left empty (a tombstone) so that no other
+     * person moves. The slots are compacted once most of them are empty.
+     * ====================================================================
+     */
+
     /**
-     * List of all persons in the address book.
+     * Persons in the address book in added order, one per slot. Null in the slots of deleted persons.
      */
-    private static final ArrayList<HashMap<PersonProperty, String>> ALL_PERSONS = new ArrayList<>();
+    private static final ArrayList<String[]> PERSON_SLOTS = new ArrayList<>();
 
     /**
-     * Stores the most recent list of persons shown to the user as a result of a user command.
-     * This is a subset of the full list. Deleting persons in the pull list does not delete
-     * those persons from this list.
+     * ID of the person in each slot, including the slots of deleted persons.
      */
-    private static ArrayList<HashMap<PersonProperty, String>> latestPersonListingView = getAllPersonsInAddressBook(); // initial view is of all
+    private static final ArrayList<Integer> PERSON_IDS_BY_SLOT = new ArrayList<>();
 
     /**
-     * The path to the file used for storing person data.
+     * Slot of each person in the address book, by the person's ID.
      */
-    private static String storageFilePath;
+    private static final HashMap<Integer, Integer> PERSON_SLOTS_BY_ID = new HashMap<>();
+
+    /**
+     * ID to be given to the next person added to the address book.
+     */
+    private static int nextPersonId = 0;
+
+    /**
+     * Number of persons in the address book, i.e. the number of slots that are not empty.
+     */
+    private static int personCount = 0;
 
     /*
      * NOTE : =============================================================
-     * Notice how this method solves the whole problem at a very high level.
-     * We can understand the high-level logic of the program by reading this
-     * method alone.
-     * If the reader wants a deeper understanding of the solution, she can go
-     * to the next level of abstraction by reading the methods that are
-     * referenced by the high-level method below.
+     * The list and export commands read the person slots from an
+     * immutable snapshot instead of the slots themselves, so they never
+     * wait for (or hold up) commands changing the address book. After
+     * every change outside a batch, and when a batch ends, a new snapshot
+     * is published. The slots are split into chunks, and a new snapshot
+     * shares every chunk that did not change with the one before it, so
+     * publishing costs little more than the change itself.
      * ====================================================================
      */
-    public static void main(String[] args) {
-        prepareApplication(args);
-        runApplication();
-    }
 
-    private static void prepareApplication(String[] args) {
-        showWelcomeMessage();
-        processProgramArgs(args);
-        loadDataFromStorage();
-    }
+    /**
+     * The person slots as of the last change made outside a batch. Replaced, never modified.
+     */
+    private static volatile PersonSlotsSnapshot publishedPersonSlots = new PersonSlotsSnapshot(
+            new String[0][][], new int[0][], new int[0], 0, 0);
 
-    private static void runApplication() {
-        while (true) {
-            String userCommand = getUserInput();
-            echoUserCommand(userCommand);
-            String feedback = executeCommand(userCommand);
-            showResultToUser(feedback);
-        }
-    }
+    /**
+     * Chunks of the person slots changed since {@link #publishedPersonSlots} was published.
+     */
+    private static final BitSet CHANGED_PERSON_SLOT_CHUNKS = new BitSet();
 
-    /*
-     * NOTE : =============================================================
-     * The method header comment can be omitted if the method is trivial
-     * and the header comment is going to be almost identical to the method
-     * signature anyway.
-     * ====================================================================
+    /**
+     * Inverted index from each word in a name to the IDs of all persons whose names contain that word.
+     * Kept in sync with {@link #PERSON_SLOTS} so that the find command does not need to scan every person.
+     * Words are kept in sorted order so that all words starting with a prefix form a single range.
      */
+    private static final TreeMap<String, Set<Integer>> NAME_WORD_INDEX = new TreeMap<>();
 
-    private static void showWelcomeMessage() {
-        showToUser(DIVIDER, DIVIDER, VERSION, MESSAGE_WELCOME, DIVIDER);
-    }
+    /**
+     * Index from every substring of {@link #NAME_WORD_GRAM_LENGTH} characters (n-gram) in a word in the
+     * {@link #NAME_WORD_INDEX} to all the words containing it. Searching for a part of a word only needs to
+     * check the words that contain every n-gram of that part, instead of every word.
+     * Only built when a part of a word is first searched for, as it is costly to build for a large vocabulary;
+     * kept in sync with the name word index from then on.
+     */
+    private static final HashMap<String, Set<String>> NAME_WORD_GRAM_INDEX = new HashMap<>();
 
-    private static void showResultToUser(String result) {
-        showToUser(result, DIVIDER);
-    }
+    /**
+     * Whether the {@link #NAME_WORD_GRAM_INDEX} has been built. It may be built by a command holding only the
+     * read lock of the model, hence volatile.
+     */
+    private static volatile boolean isNameWordGramIndexBuilt = false;
+
+    /**
+     * Length of the n-grams in the {@link #NAME_WORD_GRAM_INDEX}.
+     */
+    private static final int NAME_WORD_GRAM_LENGTH = 3;
+
+    /**
+     * Index from each phone number to the IDs of all persons with that phone number.
+     */
+    private static final HashMap<String, Set<Integer>> PHONE_INDEX = new HashMap<>();
+
+    /**
+     * Index from each email to the IDs of all persons with that email.
+     */
+    private static final HashMap<String, Set<Integer>> EMAIL_INDEX = new HashMap<>();
+
+    /**
+     * Index from each full name to the IDs of all persons with that name.
+     * Only kept if names must be unique, as only the uniqueness check needs it.
+     */
+    private static final HashMap<String, Set<Integer>> NAME_INDEX = new HashMap<>();
+
+    /**
+     * Stands for the ID of a person not (yet) in the address book; no person is given this ID.
+     */
+    private static final int NO_PERSON_ID = -1;
 
     /*
      * NOTE : =============================================================
-     * Parameter description can be omitted from the method header comment
-     * if the parameter name is self-explanatory.
-     * In the method below, '@param userInput' comment has been omitted.
+     * A listing of a range of slots (e.g. a page shown by the list command)
+     * is not copied into latestPersonListingView. Only the range is kept,
+     * together with the snapshot of the slots it was shown from. Snapshots
+     * never change, so the range keeps referring to the persons that were
+     * shown even after the slots are compacted or cleared.
      * ====================================================================
      */
 
     /**
-     * Echoes the user input back to the user.
+     * What a user of the address book was last shown, and where the user is shown the results of commands.
+     * The console has a session of its own; in server mode, each connected client has one.
+     * Only used by the thread executing the user's commands.
      */
-    private static void echoUserCommand(String userCommand) {
-        showToUser("[Command entered:" + userCommand + "]");
+    private static final class Session {
+
+        /**
+         * Stores the IDs of the most recent list of persons shown to the user as a result of a user command.
+         * This is a subset of the full list. Deleting persons in the pull list does not delete
+         * those persons from this list.
+         * Null if the most recent listing is the range of slots given by the start and end below.
+         */
+        ArrayList<Integer> latestPersonListingView = null; // initial view is of all
+
+        /**
+         * Snapshot of the slots that the range of the most recent listing is in.
+         * Null if the listing is of all persons as they are now, i.e. no listing has been shown yet.
+         */
+        PersonSlotsSnapshot latestPersonListingSnapshot = null;
+
+        /**
+         * Number of persons in the full list before the first person of the most recent listing.
+         * Displayed indexes of the listing start after this number.
+         */
+        int latestPersonListingOffset = 0;
+
+        /**
+         * First slot of the range of slots shown in the most recent listing.
+         */
+        int latestPersonListingStart = 0;
+
+        /**
+         * End (exclusive) of the range of slots shown in the most recent listing.
+         * {@link #UNBOUNDED_LISTING_END} if the listing is of all persons, including those added after it was shown.
+         */
+        int latestPersonListingEnd = UNBOUNDED_LISTING_END;
+
+        /**
+         * The next page starts at the first person with this ID or a later one. IDs increase in added order,
+         * so this holds even if the slots are compacted in the meantime.
+         */
+        int nextListPagePersonId = 0;
+
+        /**
+         * Number of persons shown on each page by the list command.
+         */
+        int listPageSize = DEFAULT_LIST_PAGE_SIZE;
+
+        /**
+         * Whether the user has a batch of changes open. In server mode, the user also holds the write lock
+         * of the model until the batch ends.
+         */
+        boolean isHoldingBatch = false;
+
+        /**
+         * Where messages to the user are written.
+         */
+        final PrintStream output;
+
+        Session(PrintStream output) {
+            this.output = output;
+        }
     }
 
     /**
-     * Processes the program main method run arguments.
-     * If a valid storage file is specified, sets up that file for storage.
-     * Otherwise sets up the default file for storage.
-     *
-     * @param args full program arguments passed to application main method
+     * The session of the user at the console.
      */
-    private static void processProgramArgs(String[] args) {
-        if (args.length >= 2) {
-            showToUser(MESSAGE_INVALID_PROGRAM_ARGS);
-            exitProgram();
+    private static final Session CONSOLE_SESSION = new Session(OUTPUT);
+
+    /**
+     * The session of the user whose command the current thread is executing.
+     */
+    private static final ThreadLocal<Session> CURRENT_SESSION = ThreadLocal.withInitial(() -> CONSOLE_SESSION);
+
+    /**
+     * An immutable version of the person slots, in chunks of {@link #PERSON_SLOT_CHUNK_SIZE} slots that may be
+     * shared with other versions. Persons are null in the slots of deleted persons.
+     */
+    private static final class PersonSlotsSnapshot extends AbstractList<String[]> {
+
+        private final String[][][] personChunks;
+        private final int[][] personIdChunks;
+
+        /**
+         * Number of persons in each chunk, and in all the chunks before each chunk.
+         */
+        private final int[] chunkPersonCounts;
+        private final int[] personCountsBeforeChunk;
+
+        private final int slotCount;
+
+        /**
+         * Number of slots that are not empty.
+         */
+        final int personCount;
+
+        /**
+         * ID that the next person added after this version was made is given; higher than any ID in it.
+         */
+        final int nextPersonId;
+
+        PersonSlotsSnapshot(String[][][] personChunks, int[][] personIdChunks, int[] chunkPersonCounts,
+                            int slotCount, int nextPersonId) {
+            this.personChunks = personChunks;
+            this.personIdChunks = personIdChunks;
+            this.chunkPersonCounts = chunkPersonCounts;
+            this.slotCount = slotCount;
+            this.nextPersonId = nextPersonId;
+            personCountsBeforeChunk = new int[chunkPersonCounts.length];
+            int count = 0;
+            for (int chunk = 0; chunk < chunkPersonCounts.length; chunk++) {
+                personCountsBeforeChunk[chunk] = count;
+                count += chunkPersonCounts[chunk];
+            }
+            personCount = count;
         }
 
-        if (args.length == 1) {
-            setupGivenFileForStorage(args[0]);
+        @Override
+        public String[] get(int slot) {
+            return personChunks[slot >>> PERSON_SLOT_CHUNK_BITS][slot & (PERSON_SLOT_CHUNK_SIZE - 1)];
         }
 
-        if(args.length == 0) {
-            setupDefaultFileForStorage();
+        @Override
+        public int size() {
+            return slotCount;
         }
-    }
 
-    /**
-     * Sets up the storage file based on the supplied file path.
-     * Creates the file if it is missing.
-     * Exits if the file name is not acceptable.
-     */
-    private static void setupGivenFileForStorage(String filePath) {
+        int getPersonId(int slot) {
+            return personIdChunks[slot >>> PERSON_SLOT_CHUNK_BITS][slot & (PERSON_SLOT_CHUNK_SIZE - 1)];
+        }
 
-        if (!isValidFilePath(filePath)) {
-            showToUser(String.format(MESSAGE_INVALID_FILE, filePath));
-            exitProgram();
+        /**
+         * Returns the number of persons in the slots before the given slot.
+         */
+        int countPersonsBeforeSlot(int slot) {
+            final int chunk = slot >>> PERSON_SLOT_CHUNK_BITS;
+            if (chunk == personChunks.length) {
+                return personCount;
+            }
+            int count = personCountsBeforeChunk[chunk];
+            for (int i = chunk << PERSON_SLOT_CHUNK_BITS; i < slot; i++) {
+                if (get(i) != null) {
+                    count++;
+                }
+            }
+            return count;
         }
 
-        storageFilePath = filePath;
-        createFileIfMissing(filePath);
+        /**
+         * Returns the first slot holding the given ID or a higher one, or the number of slots if there is none.
+         * IDs increase from slot to slot, so this is a binary search.
+         */
+        int getFirstSlotWithIdFrom(int personId) {
+            int low = 0;
+            int high = slotCount;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (getPersonId(middle) < personId) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns the slot of the person with the given ID, or -1 if the person is not in this version.
+         */
+        int getSlotOfPerson(int personId) {
+            final int slot = getFirstSlotWithIdFrom(personId);
+            return slot < slotCount && getPersonId(slot) == personId && get(slot) != null ? slot : -1;
+        }
+
+        /**
+         * Returns the IDs of the persons in the given range of slots, skipping empty slots.
+         */
+        ArrayList<Integer> getIdsOfPersonsInSlots(int start, int end) {
+            final ArrayList<Integer> personIds = new ArrayList<>();
+            for (int slot = start; slot < end; slot++) {
+                if (get(slot) != null) {
+                    personIds.add(getPersonId(slot));
+                }
+            }
+            return personIds;
+        }
     }
 
     /**
-     * Displays the goodbye message and exits the runtime.
+     * A file to import, read and decoded before the write lock of the model is taken to add the persons in it,
+     * so that other users are not held up while the file is read; see {@link #executeImportPersons}.
      */
-    private static void exitProgram() {
-        showToUser(MESSAGE_GOODBYE, DIVIDER, DIVIDER);
-        System.exit(0);
+    private static final class FileToImport {
+
+        final String filePath;
+
+        /**
+         * Lines of the file; null if the file could not be read.
+         */
+        final List<String> lines;
+
+        /**
+         * Whether the lines are in the CSV format rather than the storage format.
+         */
+        final boolean isCsv;
+
+        /**
+         * The person decoded from each line, at the same position as the line; null if it is not valid.
+         */
+        final String[][] decodedPersons;
+
+        FileToImport(String filePath, List<String> lines, boolean isCsv, String[][] decodedPersons) {
+            this.filePath = filePath;
+            this.lines = lines;
+            this.isCsv = isCsv;
+            this.decodedPersons = decodedPersons;
+        }
     }
 
     /**
-     * Sets up the storage based on the default file.
-     * Creates file if missing.
-     * Exits program if the file cannot be created.
+     * The path to the file used for storing person data.
      */
-    private static void setupDefaultFileForStorage() {
-        showToUser(MESSAGE_USING_DEFAULT_FILE);
-        storageFilePath = DEFAULT_STORAGE_FILEPATH;
-        createFileIfMissing(storageFilePath);
-    }
+    private static String storageFilePath;
 
     /**
-     * Returns true if the given file path is valid.
-     * A file path is valid if it has a valid parent directory as determined by {@link #hasValidParentDirectory}
-     * and a valid file name as determined by {@link #hasValidFileName}.
+     * Whether changes are appended to the journal rather than saved by rewriting the storage file.
      */
-    private static boolean isValidFilePath(String filePath) {
-        if (filePath == null) {
-            return false;
-        }
-        Path filePathToValidate;
-        try {
-            filePathToValidate = Paths.get(filePath);
-        } catch (InvalidPathException ipe) {
-            return false;
-        }
-        return hasValidParentDirectory(filePathToValidate) && hasValidFileName(filePathToValidate);
-    }
+    private static boolean isJournalEnabled = false;
 
     /**
-     * Returns true if the file path has a parent directory that exists.
+     * Guards the model. Commands that change the model are executed holding the write lock. Commands that
+     * only read it (see {@link #READ_ONLY_COMMAND_WORDS}) read a snapshot of the person slots instead, except
+     * for the find command, which holds the read lock while it looks up the indexes.
      */
-    private static boolean hasValidParentDirectory(Path filePath) {
-        Path parentDirectory = filePath.getParent();
-        return parentDirectory == null || Files.isDirectory(parentDirectory);
-    }
+    private static final ReentrantReadWriteLock MODEL_READ_WRITE_LOCK = new ReentrantReadWriteLock();
 
     /**
-     * Returns true if file path has a valid file name.
-     * File name is valid if it has an extension and no reserved characters.
-     * Reserved characters are OS-dependent.
-     * If a file already exists, it must be a regular file.
+     * Signals between the threads changing the model and the background writer, and guards the state of the
+     * background writer. Never acquire {@link #MODEL_READ_WRITE_LOCK} while holding this.
      */
-    private static boolean hasValidFileName(Path filePath) {
-        return filePath.getFileName().toString().lastIndexOf('.') > 0
-                && (!Files.exists(filePath) || Files.isRegularFile(filePath));
-    }
+    private static final Object MODEL_LOCK = new Object();
 
     /**
-     * Initialises the in-memory data using the storage file.
-     * Assumption: The file exists.
+     * Whether changes are saved by the background writer thread rather than by the command making them.
      */
-    private static void loadDataFromStorage() {
-        initialiseAddressBookModel(loadPersonsFromFile(storageFilePath));
-    }
+    private static boolean isAsyncPersistenceEnabled = false;
 
+    /**
+     * Milliseconds after a change is made within which it is saved, in asynchronous persistence mode.
+     */
+    private static int asyncFlushInterval = DEFAULT_ASYNC_FLUSH_INTERVAL;
+
+    /**
+     * Number of unsaved changes that makes the background writer save them right away.
+     */
+    private static int asyncFlushThreshold = DEFAULT_ASYNC_FLUSH_THRESHOLD;
+
+    /**
+     * Number of changes made that have not been saved yet by the background writer. Guarded by MODEL_LOCK.
+     */
+    private static int unsavedChangeCount = 0;
+
+    /**
+     * Number of changes made outside a batch, or committed, since the person slots were last published.
+     * The background writer is told about them once they are published. Guarded by the write lock of the model.
+     */
+    private static int unpublishedChangeCount = 0;
+
+    /**
+     * The background writer thread; null unless asynchronous persistence has been started.
+     */
+    private static Thread asyncPersistenceThread;
+
+    /**
+     * Whether the background writer has been asked to save all remaining changes and stop. Guarded by MODEL_LOCK.
+     */
+    private static boolean isAsyncPersistenceStopping = false;
+
+    /**
+     * Whether the background writer has stopped.
+     */
+    private static volatile boolean isAsyncPersistenceStopped = false;
+
+    /**
+     * Port of the local host that users connect to in server mode; 0 if not in server mode.
+     */
+    private static int serverPort = 0;
+
+    /**
+     * Properties that no two persons may share.
+     */
+    private static final EnumSet<PersonProperty> UNIQUE_PERSON_PROPERTIES = EnumSet.noneOf(PersonProperty.class);
+
+    /**
+     * When saved changes are forced to disk.
+     */
+    private static Durability durability = Durability.NONE;
+
+    /**
+     * Milliseconds between periodic syncs, with the fsync-periodic durability level.
+     */
+    private static int syncInterval = DEFAULT_SYNC_INTERVAL;
+
+    /**
+     * Files (and directories) changed since the last periodic sync. Guarded by itself.
+     */
+    private static final HashSet<Path> FILES_TO_SYNC = new HashSet<>();
+
+    /**
+     * Whether the memory-mapped storage file was changed since the last periodic sync.
+     */
+    private static volatile boolean isMappedStorageSyncPending = false;
+
+    /**
+     * Whether the storage file is in the binary storage format rather than the plain text format.
+     */
+    private static boolean isBinaryStorageEnabled = false;
+
+    /**
+     * Whether the program was started to convert a storage file rather than to run the address book.
+     */
+    private static boolean isConversionRequested = false;
+
+    /**
+     * Whether changes are written in place into the records of the memory-mapped storage file.
+     */
+    private static boolean isMappedStorageEnabled = false;
+
+    /**
+     * Channel to the storage file in memory-mapped storage mode.
+     */
+    private static FileChannel mappedStorageChannel;
+
+    /**
+     * Contents of the storage file in memory-mapped storage mode.
+     */
+    private static MappedByteBuffer mappedStorage;
+
+    /**
+     * Size in bytes of each record in the memory-mapped storage file, including the line break.
+     */
+    private static int mappedRecordSize = MAPPED_STORAGE_INITIAL_RECORD_SIZE;
+
+    /**
+     * Number of records appended to the journal since it was last compacted.
+     */
+    private static int journalRecordCount = 0;
+
+    /**
+     * Whether a batch has been started, i.e. changes are kept in memory until the batch is committed.
+     */
+    private static boolean isBatchStarted = false;
+
+    /**
+     * Number of changes made since the batch was started.
+     */
+    private static int batchChangeCount = 0;
+
+    /**
+     * Journal records of the changes made since the batch was started (journaled storage mode only).
+     */
+    private static final ArrayList<String> BATCH_JOURNAL_RECORDS = new ArrayList<>();
+
+    /**
+     * Slots changed since the batch was started (memory-mapped storage mode only).
+     */
+    private static final TreeSet<Integer> BATCH_CHANGED_SLOTS = new TreeSet<>();
+
+    /**
+     * Whether the address book was cleared since the batch was started (memory-mapped storage mode only).
+     */
+    private static boolean isClearedInBatch = false;
+
+    /**
+     * Slots of the address book when the batch was started, restored if the batch is rolled back.
+     */
+    private static ArrayList<String[]> personSlotsBeforeBatch = new ArrayList<>();
+
+    /**
+     * IDs of the persons in the slots when the batch was started, restored if the batch is rolled back.
+     */
+    private static ArrayList<Integer> personIdsBeforeBatch = new ArrayList<>();
+
+    /**
+     * Whether the storage file is loaded in the background; see {@link #PROGRAM_OPTION_LAZY}.
+     */
+    private static boolean isLazyLoadEnabled = false;
+
+    /**
+     * Whether the storage file is being loaded in the background. Set with {@link #STORAGE_LOAD_LOCK} held.
+     */
+    private static volatile boolean isStorageLoading = false;
+
+    /**
+     * Guards the handing over of the persons added while the storage file is loaded in the background,
+     * and signals the end of loading to the commands waiting for it.
+     */
+    private static final Object STORAGE_LOAD_LOCK = new Object();
+
+    /**
+     * Persons added while the storage file is loaded in the background, in added order.
+     * Guarded by STORAGE_LOAD_LOCK.
+     */
+    private static final ArrayList<String[]> PERSONS_ADDED_WHILE_LOADING = new ArrayList<>();
+
+    /**
+     * The thread loading the storage file in the background; null unless it has been started.
+     */
+    private static Thread storageLoaderThread;
+
+    /**
+     * Number of persons decoded from the storage file so far, shown to users waiting for loading to finish.
+     */
+    private static volatile int decodedPersonCount = 0;
+
+    /**
+     * Whether statistics are recorded; see {@link #PROGRAM_OPTION_STATS}. Only set at start up.
+     */
+    private static boolean isStatsEnabled = false;
+
+    /**
+     * File the statistics are written to when the program exits; null if they are not written to a file.
+     */
+    private static String statsFilePath;
+
+    /**
+     * When the program started, as given by System.nanoTime().
+     */
+    private static final long PROGRAM_START_NANOS = System.nanoTime();
+
+    /**
+     * Durations of the commands executed, by command word, in the order the commands are shown by help.
+     * Commands with an invalid command word are counted under {@link #STATS_OTHER_COMMANDS}.
+     * Never changed after it is made, so it can be read by many threads at once.
+     */
+    private static final Map<String, LatencyHistogram> COMMAND_LATENCIES = makeCommandLatencyHistograms();
+
+    /**
+     * Durations of the storage operations carried out, and the bytes each of them read or wrote in total.
+     * Never changed after they are made, so they can be read by many threads at once.
+     */
+    private static final EnumMap<StorageOperation, LatencyHistogram> STORAGE_OPERATION_LATENCIES =
+            new EnumMap<>(StorageOperation.class);
+    private static final EnumMap<StorageOperation, LongAdder> STORAGE_OPERATION_BYTES =
+            new EnumMap<>(StorageOperation.class);
+
+    static {
+        for (StorageOperation operation : StorageOperation.values()) {
+            STORAGE_OPERATION_LATENCIES.put(operation, new LatencyHistogram());
+            STORAGE_OPERATION_BYTES.put(operation, new LongAdder());
+        }
+    }
+
+    /**
+     * Counts of durations in nanoseconds, in buckets that are wider the longer the durations in them, so that
+     * every percentile is known to within the same relative error (as in HdrHistogram) in a fixed amount of
+     * memory. Durations can be recorded by many threads at once without locking.
+     */
+    private static final class LatencyHistogram {
+
+        private static final int SUB_BUCKET_COUNT = 1 << LATENCY_HISTOGRAM_SUB_BUCKET_BITS;
+        private static final long MAX_VALUE = (1L << LATENCY_HISTOGRAM_MAX_VALUE_BITS) - 1;
+
+        /**
+         * Durations below {@link #SUB_BUCKET_COUNT} nanoseconds have a bucket each. Above that, the durations
+         * between every two powers of two are split into {@link #SUB_BUCKET_COUNT} buckets of the same width.
+         */
+        private final AtomicLongArray bucketCounts = new AtomicLongArray(
+                (LATENCY_HISTOGRAM_MAX_VALUE_BITS - LATENCY_HISTOGRAM_SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            final long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+            bucketCounts.incrementAndGet(getBucketIndex(value));
+            count.increment();
+            totalNanos.add(value);
+            if (value > maxNanos.get()) {
+                maxNanos.accumulateAndGet(value, Math::max);
+            }
+        }
+
+        long getCount() {
+            return count.sum();
+        }
+
+        double getMeanNanos() {
+            final long recordedCount = count.sum();
+            return recordedCount == 0 ? 0 : (double) totalNanos.sum() / recordedCount;
+        }
+
+        long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * Returns the duration that the given percentage of the recorded durations are no longer than,
+         * rounded up to the end of its bucket.
+         */
+        long getPercentileNanos(double percentile) {
+            final long rank = Math.max(1, (long) Math.ceil(count.sum() * percentile / 100));
+            long countUpToBucket = 0;
+            for (int bucket = 0; bucket < bucketCounts.length(); bucket++) {
+                countUpToBucket += bucketCounts.get(bucket);
+                if (countUpToBucket >= rank) {
+                    return Math.min(getHighestValueInBucket(bucket), maxNanos.get());
+                }
+            }
+            return maxNanos.get();
+        }
+
+        private static int getBucketIndex(long value) {
+            if (value < SUB_BUCKET_COUNT) {
+                return (int) value;
+            }
+            final int exponent = 63 - Long.numberOfLeadingZeros(value);
+            final int shift = exponent - LATENCY_HISTOGRAM_SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+        }
+
+        private static long getHighestValueInBucket(int bucket) {
+            if (bucket < SUB_BUCKET_COUNT) {
+                return bucket;
+            }
+            final int shift = bucket / SUB_BUCKET_COUNT - 1;
+            final long lowestValue = (long) (SUB_BUCKET_COUNT + bucket % SUB_BUCKET_COUNT) << shift;
+            return lowestValue + (1L << shift) - 1;
+        }
+    }
+
+    /*
+     * NOTE : =============================================================
+     * Notice how this method solves the whole problem at a very high level.
+     * We can understand the high-level logic of the program by reading this
+     * method alone.
+     * If the reader wants a deeper understanding of the solution, she can go
+     * to the next level of abstraction by reading the methods that are
+     * referenced by the high-level method below.
+     * ====================================================================
+     */
+    public static void main(String[] args) {
+        prepareApplication(args);
+        if (serverPort > 0) {
+            runServer();
+        } else {
+            runApplication();
+        }
+    }
+
+    private static void prepareApplication(String[] args) {
+        Runtime.getRuntime().addShutdownHook(new Thread(OUTPUT::flush));
+        showWelcomeMessage();
+        processProgramArgs(args);
+        if (statsFilePath != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(AddressBook::writeStatsToFile));
+        }
+        if (isLazyLoadEnabled) {
+            startLoadingStorageInBackground();
+        } else {
+            loadDataFromStorage();
+            publishPersonSlotsSnapshot();
+            if (isAsyncPersistenceEnabled) {
+                startAsyncPersistence();
+                Runtime.getRuntime().addShutdownHook(new Thread(AddressBook::stopAsyncPersistence));
+            }
+        }
+        if (durability == Durability.PERIODIC) {
+            startPeriodicSync();
+        }
+    }
+
+    private static void runApplication() {
+        while (true) {
+            String userCommand = getUserInput();
+            echoUserCommand(userCommand);
+            String feedback = executeCommandInSession(CONSOLE_SESSION, userCommand);
+            showResultToUser(feedback);
+        }
+    }
+
+    /**
+     * Serves users connecting to the server port until the program is stopped, each on a thread of its own.
+     * Shows an error message and exits program if the port cannot be listened on.
+     */
+    private static void runServer() {
+        final ExecutorService sessionThreads = Executors.newCachedThreadPool(AddressBook::newSessionThread);
+        try (ServerSocket serverSocket =
+                     new ServerSocket(serverPort, SERVER_CONNECTION_BACKLOG, InetAddress.getLoopbackAddress())) {
+            showToUser(String.format(MESSAGE_SERVER_STARTED, serverSocket.getLocalPort()), DIVIDER);
+            OUTPUT.flush();
+            while (true) {
+                final Socket connection = serverSocket.accept();
+                sessionThreads.execute(() -> serveUser(connection));
+            }
+        } catch (IOException ioe) {
+            showToUser(String.format(MESSAGE_SERVER_FAILED, serverPort));
+            exitProgram();
+        }
+    }
+
+    private static Thread newSessionThread(Runnable sessionTask) {
+        final Thread thread = new Thread(sessionTask, "addressbook-session");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Executes the commands sent by the user over the given connection, in a session of the user's own,
+     * until the user exits or disconnects.
+     */
+    private static void serveUser(Socket connection) {
+        try (Socket socket = connection;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(
+                     new BufferedOutputStream(socket.getOutputStream()), false, StandardCharsets.UTF_8.name())) {
+            final Session session = openSession(out);
+            try {
+                showToUser(DIVIDER, VERSION, MESSAGE_WELCOME, DIVIDER);
+                out.flush();
+                String userCommand;
+                while ((userCommand = in.readLine()) != null) {
+                    if (userCommand.trim().isEmpty() || userCommand.trim().charAt(0) == INPUT_COMMENT_MARKER) {
+                        continue;
+                    }
+                    if (splitCommandWordAndArgs(userCommand)[0].equals(COMMAND_EXIT_WORD)) {
+                        showToUser(MESSAGE_GOODBYE, DIVIDER);
+                        out.flush();
+                        return;
+                    }
+                    showResultToUser(executeCommandInSession(session, userCommand));
+                    out.flush();
+                }
+            } finally {
+                closeSession(session);
+            }
+        } catch (IOException ioe) {
+            // the user disconnected; nothing more to do
+        }
+    }
+
+    /**
+     * Opens a session for a user of the server whose messages are written to the given stream,
+     * and makes it the session of the current thread.
+     */
+    private static Session openSession(PrintStream output) {
+        final Session session = new Session(output);
+        CURRENT_SESSION.set(session);
+        return session;
+    }
+
+    /**
+     * Closes the session of a user of the server, rolling back the batch of changes the user left open.
+     */
+    private static void closeSession(Session session) {
+        if (session.isHoldingBatch) {
+            // the user still holds the write lock
+            rollbackBatch();
+            publishPersonSlotsSnapshot();
+            session.isHoldingBatch = false;
+            MODEL_READ_WRITE_LOCK.writeLock().unlock();
+        }
+        CURRENT_SESSION.remove();
+    }
+
+    /**
+     * Executes the command in the given session. Commands that only read the model read a snapshot of it and
+     * take no lock (see {@link #publishedPersonSlots}); other commands hold the write lock of the model, and
+     * publish a new snapshot when done; the import command reads its file before taking the lock, and holds it
+     * only to add the persons. A user of the server who starts a batch of changes keeps holding the
+     * write lock until the batch ends, so that no other user adds to the changes made in the batch, and
+     * no snapshot is published until then. While the storage file is loaded in the background, commands that
+     * need all persons wait for it first. How long the command takes is recorded if statistics are enabled.
+     *
+     * @param session of the user who entered the command
+     * @param userCommand raw input from user
+     * @return feedback about how the command was executed
+     */
+    private static String executeCommandInSession(Session session, String userCommand) {
+        if (!isStatsEnabled) {
+            return executeCommandHoldingModelLock(session, userCommand);
+        }
+        final long startNanos = System.nanoTime();
+        try {
+            return executeCommandHoldingModelLock(session, userCommand);
+        } finally {
+            recordCommandLatency(splitCommandWordAndArgs(userCommand)[0], System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Executes the command in the given session, holding the lock of the model it needs;
+     * see {@link #executeCommandInSession}.
+     */
+    private static String executeCommandHoldingModelLock(Session session, String userCommand) {
+        final String[] commandWordAndArgs = splitCommandWordAndArgs(userCommand);
+        if (isStorageLoading && COMMAND_WORDS_NEEDING_LOADED_DATA.contains(commandWordAndArgs[0])) {
+            final Optional<String> feedback = commandWordAndArgs[0].equals(COMMAND_ADD_WORD)
+                                              ? tryAddPersonWhileLoading(commandWordAndArgs[1])
+                                              : Optional.empty();
+            if (feedback.isPresent()) {
+                return feedback.get();
+            }
+            awaitStorageLoaded();
+        }
+
+        if (READ_ONLY_COMMAND_WORDS.contains(commandWordAndArgs[0])) {
+            return executeCommand(userCommand);
+        }
+
+        if (commandWordAndArgs[0].equals(COMMAND_IMPORT_WORD)) {
+            final FileToImport fileToImport = readFileToImport(commandWordAndArgs[1]);
+            return executeHoldingWriteLock(session, () -> importPersons(fileToImport));
+        }
+        return executeHoldingWriteLock(session, () -> executeCommand(userCommand));
+    }
+
+    /**
+     * Executes a command that changes the model in the given session, holding the write lock of the model,
+     * and publishes a new snapshot of the person slots when done, unless a batch is open. A user of the
+     * server who starts a batch keeps holding the write lock after the command, until the batch ends.
+     *
+     * @param session of the user who entered the command
+     * @param command executes the command and returns feedback about how it was executed
+     * @return feedback about how the command was executed
+     */
+    private static String executeHoldingWriteLock(Session session, Supplier<String> command) {
+        MODEL_READ_WRITE_LOCK.writeLock().lock();
+        try {
+            final String feedback = command.get();
+            if (isBatchStarted != session.isHoldingBatch) {
+                if (session != CONSOLE_SESSION && isBatchStarted) {
+                    MODEL_READ_WRITE_LOCK.writeLock().lock();
+                } else if (session != CONSOLE_SESSION) {
+                    MODEL_READ_WRITE_LOCK.writeLock().unlock();
+                }
+                session.isHoldingBatch = isBatchStarted;
+            }
+            if (!isBatchStarted) {
+                publishPersonSlotsSnapshot();
+            }
+            return feedback;
+        } finally {
+            MODEL_READ_WRITE_LOCK.writeLock().unlock();
+        }
+    }
+
+    /*
+     * NOTE : =============================================================
+     * The method header comment can be omitted if the method is trivial
+     * and the header comment is going to be almost identical to the method
+     * signature anyway.
+     * ====================================================================
+     */
+
+    private static void showWelcomeMessage() {
+        showToUser(DIVIDER, DIVIDER, VERSION, MESSAGE_WELCOME, DIVIDER);
+    }
+
+    private static void showResultToUser(String result) {
+        showToUser(result, DIVIDER);
+    }
+
+    /*
+     * NOTE : =============================================================
+     * Parameter description can be omitted from the method header comment
+     * if the parameter name is self-explanatory.
+     * In the method below, '@param userInput' comment has been omitted.
+     * ====================================================================
+     */
+
+    /**
+     * Echoes the user input back to the user.
+     */
+    private static void echoUserCommand(String userCommand) {
+        showToUser("[Command entered:" + userCommand + "]");
+    }
+
+    /**
+     * Processes the program main method run arguments.
+     * If a valid storage file is specified, sets up that file for storage.
+     * Otherwise sets up the default file for storage.
+     *
+     * @param args full program arguments passed to application main method
+     */
+    private static void processProgramArgs(String[] args) {
+        final ArrayList<String> filePathArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (!processProgramOption(arg)) {
+                filePathArgs.add(arg);
+            }
+        }
+
+        if (isConversionRequested && filePathArgs.size() == 2) {
+            convertStorageFile(filePathArgs.get(0), filePathArgs.get(1));
+        }
+
+        if (isConversionRequested || filePathArgs.size() >= 2) {
+            showToUser(MESSAGE_INVALID_PROGRAM_ARGS);
+            exitProgram();
+        }
+
+        if (isJournalEnabled && isMappedStorageEnabled) {
+            showToUser(String.format(MESSAGE_CONFLICTING_PROGRAM_OPTIONS, PROGRAM_OPTION_JOURNAL, PROGRAM_OPTION_MAPPED));
+            exitProgram();
+        }
+
+        if (isAsyncPersistenceEnabled && (isJournalEnabled || isMappedStorageEnabled)) {
+            showToUser(String.format(MESSAGE_CONFLICTING_PROGRAM_OPTIONS, PROGRAM_OPTION_ASYNC,
+                                     isJournalEnabled ? PROGRAM_OPTION_JOURNAL : PROGRAM_OPTION_MAPPED));
+            exitProgram();
+        }
+
+        if (filePathArgs.size() == 1) {
+            setupGivenFileForStorage(filePathArgs.get(0));
+        }
+
+        if (filePathArgs.isEmpty()) {
+            setupDefaultFileForStorage();
+        }
+
+        isBinaryStorageEnabled |= isBinaryStorageFilePath(storageFilePath);
+        if (isMappedStorageEnabled && isBinaryStorageEnabled) {
+            showToUser(String.format(MESSAGE_CONFLICTING_PROGRAM_OPTIONS, PROGRAM_OPTION_MAPPED, PROGRAM_OPTION_BINARY));
+            exitProgram();
+        }
+    }
+
+    /**
+     * Applies the given program argument if it is one of the supported options.
+     *
+     * @param arg a single program argument
+     * @return true if the argument is an option (and not a storage file path)
+     */
+    private static boolean processProgramOption(String arg) {
+        switch (arg) {
+        case PROGRAM_OPTION_JOURNAL:
+            isJournalEnabled = true;
+            return true;
+        case PROGRAM_OPTION_MAPPED:
+            isMappedStorageEnabled = true;
+            return true;
+        case PROGRAM_OPTION_BINARY:
+            isBinaryStorageEnabled = true;
+            return true;
+        case PROGRAM_OPTION_CONVERT:
+            isConversionRequested = true;
+            return true;
+        case PROGRAM_OPTION_ASYNC:
+            isAsyncPersistenceEnabled = true;
+            return true;
+        case PROGRAM_OPTION_STATS:
+            isStatsEnabled = true;
+            return true;
+        case PROGRAM_OPTION_LAZY:
+            isLazyLoadEnabled = true;
+            return true;
+        default:
+            return processProgramOptionWithValue(arg);
+        }
+    }
+
+    /**
+     * Applies the given program argument if it is one of the supported options that are given a value,
+     * in the form OPTION=VALUE. Shows an error message and exits program if the value is not valid.
+     *
+     * @param arg a single program argument
+     * @return true if the argument is an option (and not a storage file path)
+     */
+    private static boolean processProgramOptionWithValue(String arg) {
+        final int separatorIndex = arg.indexOf(PROGRAM_OPTION_VALUE_SEPARATOR);
+        if (separatorIndex < 0) {
+            return false;
+        }
+
+        final String option = arg.substring(0, separatorIndex);
+        final String value = arg.substring(separatorIndex + 1);
+        switch (option) {
+        case PROGRAM_OPTION_ASYNC_INTERVAL:
+            asyncFlushInterval = parseProgramOptionValue(arg, value);
+            return true;
+        case PROGRAM_OPTION_ASYNC_THRESHOLD:
+            asyncFlushThreshold = parseProgramOptionValue(arg, value);
+            return true;
+        case PROGRAM_OPTION_DURABILITY:
+            durability = parseDurabilityOptionValue(arg, value);
+            return true;
+        case PROGRAM_OPTION_DURABILITY_INTERVAL:
+            syncInterval = parseProgramOptionValue(arg, value);
+            return true;
+        case PROGRAM_OPTION_UNIQUE:
+            UNIQUE_PERSON_PROPERTIES.addAll(parseUniquePropertiesOptionValue(arg, value));
+            return true;
+        case PROGRAM_OPTION_SERVER:
+            serverPort = parseProgramOptionValue(arg, value);
+            return true;
+        case PROGRAM_OPTION_STATS:
+            isStatsEnabled = true;
+            statsFilePath = parseFilePathOptionValue(value);
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Parses the value given to a program option. Shows an error message and exits program if it is not
+     * a positive number.
+     *
+     * @param arg the whole program argument, shown in the error message
+     * @param value the value given to the option
+     */
+    private static int parseProgramOptionValue(String arg, String value) {
+        try {
+            final int parsedValue = Integer.parseInt(value);
+            if (parsedValue > 0) {
+                return parsedValue;
+            }
+        } catch (NumberFormatException nfe) {
+            // shown below
+        }
+        showToUser(String.format(MESSAGE_INVALID_PROGRAM_OPTION_VALUE, arg));
+        exitProgram();
+        return 0; // not reached
+    }
+
+    /**
+     * Parses the file path given to a program option. Shows an error message and exits program if it is not
+     * a valid file path, as determined by {@link #isValidFilePath}.
+     *
+     * @param value the value given to the option
+     */
+    private static String parseFilePathOptionValue(String value) {
+        if (!isValidFilePath(value)) {
+            showToUser(String.format(MESSAGE_INVALID_FILE, value));
+            exitProgram();
+        }
+        return value;
+    }
+
+    /**
+     * Parses the durability level given to the durability program option.
+     * Shows an error message and exits program if it is not one of the levels.
+     *
+     * @param arg the whole program argument, shown in the error message
+     * @param value the value given to the option
+     */
+    private static Durability parseDurabilityOptionValue(String arg, String value) {
+        for (Durability level : Durability.values()) {
+            if (level.name().equalsIgnoreCase(value)) {
+                return level;
+            }
+        }
+        showToUser(String.format(MESSAGE_INVALID_DURABILITY, arg));
+        exitProgram();
+        return null; // not reached
+    }
+
+    /**
+     * Parses the person properties given to the unique properties program option.
+     * Shows an error message and exits program if any of them is not a person property.
+     *
+     * @param arg the whole program argument, shown in the error message
+     * @param value the value given to the option
+     */
+    private static EnumSet<PersonProperty> parseUniquePropertiesOptionValue(String arg, String value) {
+        final EnumSet<PersonProperty> properties = EnumSet.noneOf(PersonProperty.class);
+        for (String propertyName : value.split(PROGRAM_OPTION_VALUE_LIST_SEPARATOR)) {
+            final Optional<PersonProperty> property = getPersonPropertyByName(propertyName);
+            if (!property.isPresent()) {
+                showToUser(String.format(MESSAGE_INVALID_UNIQUE_PROPERTY, arg));
+                exitProgram();
+            }
+            properties.add(property.get());
+        }
+        return properties;
+    }
+
+    /**
+     * Returns the person property with the given name, ignoring case.
+     */
+    private static Optional<PersonProperty> getPersonPropertyByName(String name) {
+        for (PersonProperty property : PersonProperty.values()) {
+            if (property.name().equalsIgnoreCase(name)) {
+                return Optional.of(property);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Sets up the storage file based on the supplied file path.
+     * Creates the file if it is missing.
+     * Exits if the file name is not acceptable.
+     */
+    private static void setupGivenFileForStorage(String filePath) {
+
+        if (!isValidFilePath(filePath)) {
+            showToUser(String.format(MESSAGE_INVALID_FILE, filePath));
+            exitProgram();
+        }
+
+        storageFilePath = filePath;
+        createFileIfMissing(filePath);
+    }
+
+    /**
+     * Saves any changes not saved yet by the background writer, forces changes not synced yet to disk,
+     * displays the goodbye message and exits the runtime.
+     */
+    private static void exitProgram() {
+        if (Thread.currentThread() == storageLoaderThread) {
+            // the shutdown hooks must not wait for the loader, which waits for them to finish
+            abandonStorageLoad();
+        }
+        stopAsyncPersistence();
+        syncChangedFiles();
+        showToUser(MESSAGE_GOODBYE, DIVIDER, DIVIDER);
+        OUTPUT.flush();
+        System.exit(0);
+    }
+
+    /**
+     * Sets up the storage based on the default file.
+     * Creates file if missing.
+     * Exits program if the file cannot be created.
+     */
+    private static void setupDefaultFileForStorage() {
+        showToUser(MESSAGE_USING_DEFAULT_FILE);
+        storageFilePath = DEFAULT_STORAGE_FILEPATH;
+        createFileIfMissing(storageFilePath);
+    }
+
+    /**
+     * Returns true if the given file path is valid.
+     * A file path is valid if it has a valid parent directory as determined by {@link #hasValidParentDirectory}
+     * and a valid file name as determined by {@link #hasValidFileName}.
+     */
+    private static boolean isValidFilePath(String filePath) {
+        if (filePath == null) {
+            return false;
+        }
+        Path filePathToValidate;
+        try {
+            filePathToValidate = Paths.get(filePath);
+        } catch (InvalidPathException ipe) {
+            return false;
+        }
+        return hasValidParentDirectory(filePathToValidate) && hasValidFileName(filePathToValidate);
+    }
+
+    /**
+     * Returns true if the file path has a parent directory that exists.
+     */
+    private static boolean hasValidParentDirectory(Path filePath) {
+        Path parentDirectory = filePath.getParent();
+        return parentDirectory == null || Files.isDirectory(parentDirectory);
+    }
+
+    /**
+     * Returns true if file path has a valid file name.
+     * File name is valid if it has an extension and no reserved characters.
+     * Reserved characters are OS-dependent.
+     * If a file already exists, it must be a regular file.
+     */
+    private static boolean hasValidFileName(Path filePath) {
+        return filePath.getFileName().toString().lastIndexOf('.') > 0
+                && (!Files.exists(filePath) || Files.isRegularFile(filePath));
+    }
+
+    /**
+     * Initialises the in-memory data using the storage file.
+     * Assumption: The file exists.
+     */
+    private static void loadDataFromStorage() {
+        final long startNanos = System.nanoTime();
+        final long bytesToLoad = isStatsEnabled ? getSizeOfStorageFiles() : 0;
+        loadDataFromStorageFiles();
+        recordStorageOperation(StorageOperation.LOAD, startNanos, bytesToLoad);
+    }
+
+    /**
+     * Returns the size in bytes of the storage file, and of the journal in journaled storage mode;
+     * 0 for a file whose size cannot be read.
+     */
+    private static long getSizeOfStorageFiles() {
+        long size = 0;
+        for (String filePath : isJournalEnabled
+                               ? Arrays.asList(storageFilePath, getJournalFilePath())
+                               : Collections.singletonList(storageFilePath)) {
+            try {
+                size += Files.size(Paths.get(filePath));
+            } catch (IOException ioe) {
+                // counted as empty
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Loads the storage file, replaying the journal on it in journaled storage mode.
+     */
+    private static void loadDataFromStorageFiles() {
+        if (isMappedStorageEnabled) {
+            loadDataFromMappedStorage();
+            compactPersonSlotsIfMostlyEmpty();
+            return;
+        }
+
+        if (isJournalEnabled) {
+            recoverInterruptedJournalCompaction();
+        }
+
+        initialiseAddressBookModel(loadPersonsFromFile(storageFilePath));
+
+        if (isJournalEnabled) {
+            replayJournal();
+            compactJournal();
+        }
+    }
+
+    /**
+     * Starts loading the storage file on a background thread; see {@link #PROGRAM_OPTION_LAZY}. Makes sure that
+     * the persons added in the meantime, whose add commands have already been reported as done, are saved
+     * when the JVM shuts down, however it is shut down.
+     */
+    private static void startLoadingStorageInBackground() {
+        isStorageLoading = true;
+        storageLoaderThread = new Thread(AddressBook::loadStorageInBackground, "addressbook-loader");
+        storageLoaderThread.setDaemon(true);
+        storageLoaderThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(AddressBook::finishLoadingStorageOnShutdown));
+    }
+
+    /**
+     * Body of the shutdown hook of the lazy loading mode. Waits until the storage file has been loaded and
+     * the persons added in the meantime have been saved, then, in asynchronous persistence mode, saves any
+     * changes left to the background writer, which the loader starts.
+     */
+    private static void finishLoadingStorageOnShutdown() {
+        synchronized (STORAGE_LOAD_LOCK) {
+            while (isStorageLoading) {
+                try {
+                    STORAGE_LOAD_LOCK.wait();
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+        stopAsyncPersistence();
+    }
+
+    /**
+     * Stops waiting for the storage file to be loaded, as the loader is exiting the program instead.
+     * The persons added in the meantime are not saved.
+     */
+    private static void abandonStorageLoad() {
+        synchronized (STORAGE_LOAD_LOCK) {
+            isStorageLoading = false;
+            STORAGE_LOAD_LOCK.notifyAll();
+        }
+    }
+
+    /**
+     * Loads the storage file holding the write lock of the model, then adds the persons added in the meantime
+     * and saves them with a single write. Exits program if they cannot be saved, as their add commands have
+     * already been reported as done. Commands waiting for loading to finish are released only once no more
+     * persons are left to add, so that they see all persons.
+     */
+    private static void loadStorageInBackground() {
+        MODEL_READ_WRITE_LOCK.writeLock().lock();
+        try {
+            loadDataFromStorage();
+            if (isAsyncPersistenceEnabled) {
+                startAsyncPersistence();
+            }
+            while (true) {
+                final ArrayList<String[]> personsToAdd;
+                synchronized (STORAGE_LOAD_LOCK) {
+                    if (PERSONS_ADDED_WHILE_LOADING.isEmpty()) {
+                        publishPersonSlotsSnapshot();
+                        isStorageLoading = false;
+                        STORAGE_LOAD_LOCK.notifyAll();
+                        return;
+                    }
+                    personsToAdd = new ArrayList<>(PERSONS_ADDED_WHILE_LOADING);
+                    PERSONS_ADDED_WHILE_LOADING.clear();
+                }
+
+                beginBatch();
+                for (String[] person : personsToAdd) {
+                    addPersonToAddressBook(person);
+                }
+                if (!tryCommitBatch()) {
+                    showToUser(String.format(MESSAGE_ERROR_WRITING_TO_FILE, storageFilePath));
+                    exitProgram();
+                }
+            }
+        } finally {
+            MODEL_READ_WRITE_LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tells the user how many persons have been loaded so far, and waits until the storage file has been
+     * loaded in the background.
+     */
+    private static void awaitStorageLoaded() {
+        showToUser(String.format(MESSAGE_WAITING_FOR_STORAGE_LOAD, decodedPersonCount));
+        CURRENT_SESSION.get().output.flush();
+        synchronized (STORAGE_LOAD_LOCK) {
+            while (isStorageLoading) {
+                try {
+                    STORAGE_LOAD_LOCK.wait();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+
+    /*
+     * ===========================================
+     *           COMMAND LOGIC
+     * ===========================================
+     */
+
+    /**
+     * Executes the command as specified by the {@code userInputString}
+     *
+     * @param userInputString  raw input from user
+     * @return  feedback about how the command was executed
+     */
+    private static String executeCommand(String userInputString) {
+        final String[] commandTypeAndParams = splitCommandWordAndArgs(userInputString);
+        final String commandType = commandTypeAndParams[0];
+        final String commandArgs = commandTypeAndParams[1];
+
+        switch (commandType) {
+        case COMMAND_ADD_WORD:
+            return executeAddPerson(commandArgs);
+        case COMMAND_FIND_WORD:
+            return executeFindPersons(commandArgs);
+        case COMMAND_LIST_WORD:
+            return executeListPersons(commandArgs);
+        case COMMAND_UPDATE_WORD:
+            return executeUpdatePerson(commandArgs);
+        case COMMAND_DELETE_WORD:
+            return executeDeletePerson(commandArgs);
+        case COMMAND_CLEAR_WORD:
+            return executeClearAddressBook();
+        case COMMAND_IMPORT_WORD:
+            return executeImportPersons(commandArgs);
+        case COMMAND_EXPORT_WORD:
+            return executeExportPersons(commandArgs);
+        case COMMAND_BEGIN_WORD:
+            return executeBeginBatch();
+        case COMMAND_COMMIT_WORD:
+            return executeCommitBatch();
+        case COMMAND_ROLLBACK_WORD:
+            return executeRollbackBatch();
+        case COMMAND_STATS_WORD:
+            return executeShowStats();
+        case COMMAND_HELP_WORD:
+            return getUsageInfoForAllCommands();
+        case COMMAND_EXIT_WORD:
+            executeExitProgramRequest();
+        default:
+            return getMessageForInvalidCommandInput(commandType, getUsageInfoForAllCommands());
+        }
+    }
+
+    /**
+     * Splits raw user input into command word and command arguments string
+     *
+     * @return  size 2 array; first element is the command type and second element is the arguments string
+     */
+    private static String[] splitCommandWordAndArgs(String rawUserInput) {
+        final String[] split =  rawUserInput.trim().split("\\s+", 2);
+        return split.length == 2 ? split : new String[] { split[0] , "" }; // else case: no parameters
+    }
+
+    /**
+     * Constructs a generic feedback message for an invalid command from user, with instructions for correct usage.
+     *
+     * @param correctUsageInfo message showing the correct usage
+     * @return invalid command args feedback message
+     */
+    private static String getMessageForInvalidCommandInput(String userCommand, String correctUsageInfo) {
+        return String.format(MESSAGE_INVALID_COMMAND_FORMAT, userCommand, correctUsageInfo);
+    }
+
+    /**
+     * Adds a person (specified by the command args) to the address book.
+     * The entire command arguments string is treated as a string representation of the person to add.
+     *
+     * @param commandArgs full command args string from the user
+     * @return feedback display message for the operation result
+     */
+    private static String executeAddPerson(String commandArgs) {
+        // try decoding a person from the raw args
+        final Optional<String[]> decodeResult = decodePersonFromString(commandArgs);
+
+        // checks if args are valid (decode result will not be present if the person is invalid)
+        if (!decodeResult.isPresent()) {
+            return getMessageForInvalidCommandInput(COMMAND_ADD_WORD, getUsageInfoForAddCommand());
+        }
+
+        // add the person as specified, unless another person has the same value for a unique property
+        final String[] personToAdd = decodeResult.get();
+        final Optional<PersonProperty> duplicatedProperty = addPersonToAddressBook(personToAdd);
+        return duplicatedProperty.isPresent() ? getMessageForDuplicatePerson(personToAdd, duplicatedProperty.get())
+                                              : getMessageForSuccessfulAddPerson(personToAdd);
+    }
+
+    /**
+     * Adds a person (specified by the command args) to the persons to be added once the storage file has been
+     * loaded in the background, if it has not been loaded yet and the person can be added before it is:
+     * unless some person properties must be unique, or the person must be saved before the command returns.
+     *
+     * @param commandArgs full command args string from the user
+     * @return feedback display message for the operation result, unless the add command must wait for loading
+     */
+    private static Optional<String> tryAddPersonWhileLoading(String commandArgs) {
+        if (!UNIQUE_PERSON_PROPERTIES.isEmpty() || durability == Durability.COMMIT) {
+            return Optional.empty();
+        }
+
+        final Optional<String[]> decodeResult = decodePersonFromString(commandArgs);
+        if (!decodeResult.isPresent()) {
+            return Optional.of(getMessageForInvalidCommandInput(COMMAND_ADD_WORD, getUsageInfoForAddCommand()));
+        }
+
+        synchronized (STORAGE_LOAD_LOCK) {
+            if (!isStorageLoading) {
+                return Optional.empty();
+            }
+            PERSONS_ADDED_WHILE_LOADING.add(decodeResult.get());
+        }
+        return Optional.of(getMessageForSuccessfulAddPerson(decodeResult.get()));
+    }
+
+    /**
+     * Constructs a feedback message for a person rejected for having the same value for a unique property
+     * as another person.
+     *
+     * @param person who was rejected
+     * @param duplicatedProperty unique property the person shares with another person
+     * @return duplicate person feedback message
+     */
+    private static String getMessageForDuplicatePerson(String[] person, PersonProperty duplicatedProperty) {
+        return String.format(MESSAGE_DUPLICATE_PERSON,
+                duplicatedProperty.name().toLowerCase(), person[duplicatedProperty.ordinal()]);
+    }
+
+    /**
+     * Constructs a feedback message for a successful add person command execution.
+     *
+     * @see #executeAddPerson(String)
+     * @param addedPerson person who was successfully added
+     * @return successful add person feedback message
+     */
+    private static String getMessageForSuccessfulAddPerson(String[] addedPerson) {
+        return String.format(MESSAGE_ADDED,
+                getNameFromPerson(addedPerson), getPhoneFromPerson(addedPerson), getEmailFromPerson(addedPerson));
+    }
+
+    /**
+     * Finds and lists all persons in address book whose name contains any of the argument keywords,
+     * or whose phone number or email is given by any of them.
+     * Keyword matching is case sensitive.
+     *
+     * @param commandArgs full command args string from the user
+     * @return feedback display message for the operation result
+     */
+    private static String executeFindPersons(String commandArgs) {
+        final Set<String> keywords = extractKeywordsFromFindPersonArgs(commandArgs);
+        final ArrayList<Integer> idsOfPersonsFound;
+        final ArrayList<String[]> personsFound;
+        // the indexes are not part of the snapshot, so only the lookup waits for commands changing them
+        MODEL_READ_WRITE_LOCK.readLock().lock();
+        try {
+            idsOfPersonsFound = getIdsOfPersonsMatchingAnyKeyword(keywords);
+            personsFound = getPersonsByIds(idsOfPersonsFound);
+        } finally {
+            MODEL_READ_WRITE_LOCK.readLock().unlock();
+        }
+        showToUser(personsFound, idsOfPersonsFound);
+        return getMessageForPersonsDisplayedSummary(idsOfPersonsFound.size());
+    }
+
+    /**
+     * Constructs a feedback message to summarise an operation that displayed a listing of persons.
+     *
+     * @param displayedCount number of persons displayed
+     * @return summary message for persons displayed
+     */
+    private static String getMessageForPersonsDisplayedSummary(int displayedCount) {
+        return String.format(MESSAGE_PERSONS_FOUND_OVERVIEW, displayedCount);
+    }
+
+    /**
+     * Extracts keywords from the command arguments given for the find persons command.
+     *
+     * @param findPersonCommandArgs full command args string for the find persons command
+     * @return set of keywords as specified by args
+     */
+    private static Set<String> extractKeywordsFromFindPersonArgs(String findPersonCommandArgs) {
+        return new HashSet<>(splitByWhitespace(findPersonCommandArgs.trim()));
+    }
+
+    /**
+     * Retrieves the IDs of all persons in the full model matched by some of the specified keywords.
+     * A keyword starting with the phone or email prefix matches persons with exactly the phone number or
+     * email after the prefix. Any other keyword matches persons with a word in their name matching it;
+     * it may start or end with the wildcard to match only the end or start of a word.
+     *
+     * @param keywords for searching
+     * @return IDs of persons in full model matched by some of the keywords, in added order
+     */
+    private static ArrayList<Integer> getIdsOfPersonsMatchingAnyKeyword(Collection<String> keywords) {
+        final Set<Integer> matchedIds = new HashSet<>();
+
+        for (String keyword : keywords) {
+            if (keyword.startsWith(PERSON_DATA_PREFIX_PHONE)) {
+                final String phone = keyword.substring(PERSON_DATA_PREFIX_PHONE.length());
+                matchedIds.addAll(PHONE_INDEX.getOrDefault(phone, Collections.emptySet()));
+            } else if (keyword.startsWith(PERSON_DATA_PREFIX_EMAIL)) {
+                final String email = keyword.substring(PERSON_DATA_PREFIX_EMAIL.length());
+                matchedIds.addAll(EMAIL_INDEX.getOrDefault(email, Collections.emptySet()));
+            } else {
+                for (String word : getNameWordsMatchingKeyword(keyword)) {
+                    matchedIds.addAll(NAME_WORD_INDEX.get(word));
+                }
+            }
+        }
+
+        // IDs are given out in added order, so sorting them lists matches in the same order as the full list
+        final ArrayList<Integer> orderedMatches = new ArrayList<>(matchedIds);
+        Collections.sort(orderedMatches);
+        return orderedMatches;
+    }
+
+    /**
+     * Retrieves the words in the name word index matched by the keyword.
+     * A keyword without wildcards matches only the same word. A keyword ending with the wildcard matches
+     * words starting with the rest of it, one starting with the wildcard matches words ending with the rest
+     * of it, and one with both matches words containing the rest of it.
+     *
+     * @param keyword for searching
+     * @return words in name word index matched by the keyword
+     */
+    private static Collection<String> getNameWordsMatchingKeyword(String keyword) {
+        final boolean isMatchingWordEnd = keyword.startsWith(FIND_WILDCARD);
+        final boolean isMatchingWordStart = keyword.endsWith(FIND_WILDCARD) && keyword.length() > 1;
+        final String partOfWord = keyword.substring(isMatchingWordEnd ? 1 : 0,
+                                                    keyword.length() - (isMatchingWordStart ? 1 : 0));
+
+        if (isMatchingWordEnd) {
+            final ArrayList<String> matchedWords = new ArrayList<>();
+            for (String word : getNameWordsWithAllGramsOf(partOfWord)) {
+                if (isMatchingWordStart ? word.contains(partOfWord) : word.endsWith(partOfWord)) {
+                    matchedWords.add(word);
+                }
+            }
+            return matchedWords;
+        }
+        if (isMatchingWordStart) {
+            // every word starting with the prefix sorts before the prefix followed by the largest character
+            return NAME_WORD_INDEX.subMap(partOfWord, partOfWord + Character.MAX_VALUE).keySet();
+        }
+        return NAME_WORD_INDEX.containsKey(keyword) ? Collections.singletonList(keyword) : Collections.emptyList();
+    }
+
+    /**
+     * Retrieves a small set of words in the name word index that includes every word containing the part of a
+     * word. The words are not checked to actually contain it.
+     */
+    private static Collection<String> getNameWordsWithAllGramsOf(String partOfWord) {
+        if (partOfWord.length() < NAME_WORD_GRAM_LENGTH) {
+            // too short to have any n-grams, so any word may contain it
+            return NAME_WORD_INDEX.keySet();
+        }
+        if (!isNameWordGramIndexBuilt) {
+            buildNameWordGramIndex();
+        }
+        // every word containing the part contains all of its n-grams, so the words with the rarest one will do
+        Set<String> fewestWords = null;
+        for (String gram : getNameWordGrams(partOfWord)) {
+            final Set<String> wordsWithGram = NAME_WORD_GRAM_INDEX.getOrDefault(gram, Collections.emptySet());
+            if (fewestWords == null || wordsWithGram.size() < fewestWords.size()) {
+                fewestWords = wordsWithGram;
+            }
+        }
+        return fewestWords;
+    }
+
+    /**
+     * Builds the n-gram index from all words in the name word index.
+     */
+    private static void buildNameWordGramIndex() {
+        synchronized (NAME_WORD_GRAM_INDEX) { // readers of the model may get here at the same time
+            if (isNameWordGramIndexBuilt) {
+                return;
+            }
+            for (String word : NAME_WORD_INDEX.keySet()) {
+                addNameWordToGramIndex(word);
+            }
+            isNameWordGramIndexBuilt = true;
+        }
+    }
+
+    /**
+     * Adds the word under each of its n-grams to the n-gram index.
+     */
+    private static void addNameWordToGramIndex(String word) {
+        for (String gram : getNameWordGrams(word)) {
+            addToIndex(NAME_WORD_GRAM_INDEX, gram, word);
+        }
+    }
+
+    /**
+     * Returns the n-grams of the word, i.e. all its substrings of {@link #NAME_WORD_GRAM_LENGTH} characters.
+     * A word shorter than that has none.
+     */
+    private static Set<String> getNameWordGrams(String word) {
+        final Set<String> grams = new HashSet<>();
+        for (int start = 0; start + NAME_WORD_GRAM_LENGTH <= word.length(); start++) {
+            grams.add(word.substring(start, start + NAME_WORD_GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    /**
+     * Updates person identified using last displayed index.
+     *
+     * @param commandArgs full command args string from the user
+     * @return feedback display message for the operation result
+     */
+    private static String executeUpdatePerson(String commandArgs) {
+        if (!isUpdatePersonArgsValid(commandArgs)) {
+            return getMessageForInvalidCommandInput(COMMAND_UPDATE_WORD, getUsageInfoForUpdateCommand());
+        }
+
+        final int targetVisibleIndex = extractTargetIndexFromUpdatePersonArgs(commandArgs);
+        if (!isDisplayIndexValidForLastPersonListingView(targetVisibleIndex)) {
+            return MESSAGE_INVALID_PERSON_DISPLAYED_INDEX;
+        }
+
+        final int personSlot = getSlotByLastVisibleIndex(targetVisibleIndex);
+        // Checks whether the person is still in the address book.
+        if (personSlot < 0) {
+            return MESSAGE_PERSON_NOT_IN_ADDRESSBOOK;
+        }
+
+        // Persons are never modified; the updated person replaces the original one.
+        final String[] updatedPerson = makeUpdatedPerson(PERSON_SLOTS.get(personSlot), commandArgs);
+        final Optional<PersonProperty> duplicatedProperty = updatePersonInAddressBook(personSlot, updatedPerson);
+        return duplicatedProperty.isPresent() ? getMessageForDuplicatePerson(updatedPerson, duplicatedProperty.get())
+                                              : getMessageForSuccessfulUpdate(updatedPerson);
+    }
+
+    /**
+     * Checks validity of update person argument string's format.
+     *
+     * @param rawArgs raw command args string for the update person command
+     * @return whether the input args string is valid
+     */
+    private static boolean isUpdatePersonArgsValid(String rawArgs) {
+        /* Notice: Here we do not check whether the data input exists or is valid. It is okay for users to
+          to not change anything. Only the person index is checked. */
+        return isUpdatePersonArgsIndexValid(rawArgs);
+    }
+
+    /**
+     * Checks existence and correctness of person (last displayed) index in the update argument string's format.
+     *
+     * @param rawArgs raw command args string for the update person command
+     * @return whether the input args string has a legal person index
+     */
+    private static boolean isUpdatePersonArgsIndexValid(String rawArgs) {
+        final Optional<String[]> fields = splitPersonDataFields(rawArgs);
+        // Checks whether the args have a data prefix, and each prefix at most once.
+        if (!fields.isPresent() || (fields.get()[PersonProperty.PHONE.ordinal()] == null
+                                    && fields.get()[PersonProperty.EMAIL.ordinal()] == null)) {
+            return false;
+        }
+
+        // Checks whether the leading string (up to the first data prefix) represents a valid index number.
+        try {
+            final int extractedIndex = Integer.parseInt(fields.get()[PersonProperty.NAME.ordinal()]); // use standard libraries to parse
+            return extractedIndex >= DISPLAYED_INDEX_OFFSET;
+        } catch (NumberFormatException nfe) {
+            return false;
+        }
+    }
+
+    /**
+     * Extracts the target's index from the raw update person args string
+     *
+     * @param rawArgs raw command args string for the update person command
+     * @return extracted index
+     */
+    private static int extractTargetIndexFromUpdatePersonArgs(String rawArgs) {
+        // index is the leading field up to the first data prefix symbol
+        return Integer.parseInt(splitPersonDataFields(rawArgs).get()[PersonProperty.NAME.ordinal()]);
+    }
+
+    /**
+     * Constructs a feedback message for a successful delete person command execution.
+     *
+     * @see #executeUpdatePerson(String)
+     * @param updatedPerson that person's information after being updated
+     * @return successful update person feedback message
+     */
+    private static String getMessageForSuccessfulUpdate(String[] updatedPerson) {
+        return String.format(MESSAGE_UPDATE_PERSON_SUCCESS, getMessageForFormattedPersonData(updatedPerson));
+    }
+
+    /**
+     * Deletes person identified using last displayed index.
+     *
+     * @param commandArgs full command args string from the user
+     * @return feedback display message for the operation result
+     */
+    private static String executeDeletePerson(String commandArgs) {
+        if (!isDeletePersonArgsValid(commandArgs)) {
+            return getMessageForInvalidCommandInput(COMMAND_DELETE_WORD, getUsageInfoForDeleteCommand());
+        }
+
+        final int targetVisibleIndex = extractTargetIndexFromDeletePersonArgs(commandArgs);
+        if (!isDisplayIndexValidForLastPersonListingView(targetVisibleIndex)) {
+            return MESSAGE_INVALID_PERSON_DISPLAYED_INDEX;
+        }
+
+        final int targetSlot = getSlotByLastVisibleIndex(targetVisibleIndex);
+        if (targetSlot < 0) {
+            return MESSAGE_PERSON_NOT_IN_ADDRESSBOOK; // not found
+        }
+
+        final String[] deletedPerson = deletePersonFromAddressBook(targetSlot);
+        return getMessageForSuccessfulDelete(deletedPerson);
+    }
+
+    /**
+     * Checks validity of delete person argument string's format.
+     *
+     * @param rawArgs raw command args string for the delete person command
+     * @return whether the input args string is valid
+     */
+    private static boolean isDeletePersonArgsValid(String rawArgs) {
+        try {
+            final int extractedIndex = Integer.parseInt(rawArgs.trim()); // use standard libraries to parse
+            return extractedIndex >= DISPLAYED_INDEX_OFFSET;
+        } catch (NumberFormatException nfe) {
+            return false;
+        }
+    }
+
+    /**
+     * Extracts the target's index from the raw delete person args string
+     *
+     * @param rawArgs raw command args string for the delete person command
+     * @return extracted index
+     */
+    private static int extractTargetIndexFromDeletePersonArgs(String rawArgs) {
+        return Integer.parseInt(rawArgs.trim());
+    }
+
+    /**
+     * Checks that the given index is within bounds and valid for the last shown person list view.
+     *
+     * @param index to check
+     * @return whether it is valid
+     */
+    private static boolean isDisplayIndexValidForLastPersonListingView(int index) {
+        final Session session = CURRENT_SESSION.get();
+        // with no listing shown yet, the indexes are of all persons as they are now, not of their slots
+        final int slotCount = session.latestPersonListingSnapshot != null
+                ? session.latestPersonListingSnapshot.size()
+                : personCount;
+        final int listingEnd = session.latestPersonListingView != null
+                ? session.latestPersonListingOffset + session.latestPersonListingView.size()
+                : session.latestPersonListingOffset - session.latestPersonListingStart
+                        + Math.min(session.latestPersonListingEnd, slotCount);
+        return index >= session.latestPersonListingOffset + DISPLAYED_INDEX_OFFSET && index < listingEnd + DISPLAYED_INDEX_OFFSET;
+    }
+
+    /**
+     * Constructs a feedback message for a successful delete person command execution.
+     *
+     * @see #executeDeletePerson(String)
+     * @param deletedPerson successfully deleted
+     * @return successful delete person feedback message
+     */
+    private static String getMessageForSuccessfulDelete(String[] deletedPerson) {
+        return String.format(MESSAGE_DELETE_PERSON_SUCCESS, getMessageForFormattedPersonData(deletedPerson));
+    }
+
+    /**
+     * Displays persons in the address book to the user; in added order.
+     * Displays all persons if no args are given. Otherwise displays a page of persons: the first page of
+     * the given size, or the page after the last page displayed.
+     *
+     * @param commandArgs full command args string from the user
+     * @return feedback display message for the operation result
+     */
+    private static String executeListPersons(String commandArgs) {
+        final Session session = CURRENT_SESSION.get();
+        final PersonSlotsSnapshot slots = getPersonSlotsSnapshot(session);
+        final String listArgs = commandArgs.trim();
+
+        if (listArgs.isEmpty()) {
+            return listPersonsFromSlot(slots, 0, slots.personCount);
+        }
+
+        if (!listArgs.equals(COMMAND_LIST_NEXT_PAGE_ARG)) {
+            if (!isListPageSizeValid(listArgs)) {
+                return getMessageForInvalidCommandInput(COMMAND_LIST_WORD, getUsageInfoForListCommand());
+            }
+            session.listPageSize = Integer.parseInt(listArgs);
+            session.nextListPagePersonId = 0;
+        }
+
+        final int pageStart = slots.getFirstSlotWithIdFrom(session.nextListPagePersonId);
+        final String pageSummary = listPersonsFromSlot(slots, pageStart, session.listPageSize);
+        final int nextPageStart = slots.getFirstSlotWithIdFrom(session.nextListPagePersonId);
+        final int personsLeftToList = slots.personCount - slots.countPersonsBeforeSlot(nextPageStart);
+        return personsLeftToList > 0
+                ? pageSummary + LS + String.format(MESSAGE_PERSONS_LEFT_TO_LIST, personsLeftToList,
+                                                   COMMAND_LIST_WORD + " " + COMMAND_LIST_NEXT_PAGE_ARG)
+                : pageSummary;
+    }
+
+    /**
+     * Checks validity of the page size given to the list persons command.
+     *
+     * @param rawArgs raw command args string for the list persons command
+     * @return whether the args string is a positive number
+     */
+    private static boolean isListPageSizeValid(String rawArgs) {
+        try {
+            return Integer.parseInt(rawArgs) > 0; // use standard libraries to parse
+        } catch (NumberFormatException nfe) {
+            return false;
+        }
+    }
+
+    /**
+     * Displays up to the given number of persons to the user, starting from the given slot.
+     * The persons are shown straight from their slots unless some of the slots are empty.
+     * The next page starts after the last person displayed.
+     *
+     * @param slots snapshot of the slots to display persons from
+     * @param start slot of the first person to display
+     * @param maxCount maximum number of persons to display
+     * @return summary message for persons displayed
+     */
+    private static String listPersonsFromSlot(PersonSlotsSnapshot slots, int start, int maxCount) {
+        final Session session = CURRENT_SESSION.get();
+        final int offset = slots.countPersonsBeforeSlot(start);
+        int endSlot = start;
+        int displayedCount = 0;
+        while (endSlot < slots.size() && displayedCount < maxCount) {
+            if (slots.get(endSlot) != null) {
+                displayedCount++;
+            }
+            endSlot++;
+        }
+
+        if (endSlot - start == displayedCount) {
+            showDisplayStringToUser(slots.subList(start, endSlot), offset + DISPLAYED_INDEX_OFFSET);
+            updateLatestViewedPersonRange(slots, start, endSlot, offset);
+        } else {
+            final ArrayList<Integer> displayedIds = new ArrayList<>(displayedCount);
+            final ArrayList<String[]> displayedPersons = new ArrayList<>(displayedCount);
+            for (int slot = start; slot < endSlot; slot++) {
+                if (slots.get(slot) != null) {
+                    displayedIds.add(slots.getPersonId(slot));
+                    displayedPersons.add(slots.get(slot));
+                }
+            }
+            showDisplayStringToUser(displayedPersons, offset + DISPLAYED_INDEX_OFFSET);
+            updateLatestViewedPersonListing(displayedIds, offset);
+        }
+
+        session.nextListPagePersonId = endSlot < slots.size() ? slots.getPersonId(endSlot) : slots.nextPersonId;
+        return getMessageForPersonsDisplayedSummary(displayedCount);
+    }
+
+    /**
+     * Clears all persons in the address book.
+     *
+     * @return feedback display message for the operation result
+     */
+    private static String executeClearAddressBook() {
+        clearAddressBook();
+        return MESSAGE_ADDRESSBOOK_CLEARED;
+    }
+
+    /**
+     * Adds all persons in the file (specified by the command args) to the address book and saves them with
+     * a single write, as a batch. Inside a batch started by the user, they are saved when that batch is
+     * committed instead. Lines that are not valid persons, or persons who have the same value for a unique
+     * property as another person, are not added and their line numbers are reported.
+     *
+     * @param commandArgs full command args string from the user
+     * @return feedback display message for the operation result
+     */
+    private static String executeImportPersons(String commandArgs) {
+        return importPersons(readFileToImport(commandArgs));
+    }
+
+    /**
+     * Reads and decodes the file to import (specified by the command args). Does not change the model,
+     * so it needs no lock of the model.
+     *
+     * @param commandArgs full command args string from the user
+     * @return the file to import, without lines if it could not be read
+     */
+    private static FileToImport readFileToImport(String commandArgs) {
+        final String filePath = commandArgs.trim();
+        final boolean isCsv = filePath.endsWith(CSV_FILE_EXTENSION);
+        if (filePath.isEmpty()) {
+            return new FileToImport(filePath, null, isCsv, null);
+        }
+
+        final List<String> lines;
+        try {
+            lines = Files.readAllLines(Paths.get(filePath));
+        } catch (IOException | InvalidPathException e) {
+            return new FileToImport(filePath, null, isCsv, null);
+        }
+        return new FileToImport(filePath, lines, isCsv, decodeImportedLines(lines, isCsv));
+    }
+
+    /**
+     * Adds the persons decoded from the file to import to the address book; see {@link #executeImportPersons}.
+     *
+     * @param fileToImport read and decoded file to import
+     * @return feedback display message for the operation result
+     */
+    private static String importPersons(FileToImport fileToImport) {
+        final String filePath = fileToImport.filePath;
+        if (filePath.isEmpty()) {
+            return getMessageForInvalidCommandInput(COMMAND_IMPORT_WORD, getUsageInfoForImportCommand());
+        }
+        if (fileToImport.lines == null) {
+            return String.format(MESSAGE_IMPORT_READ_FAILED, filePath);
+        }
+
+        final List<String> lines = fileToImport.lines;
+        final boolean isCsv = fileToImport.isCsv;
+        final String[][] decodedPersons = fileToImport.decodedPersons;
+
+        final boolean isImportedInOwnBatch = !isBatchStarted;
+        if (isImportedInOwnBatch) {
+            beginBatch();
+        }
+
+        final ArrayList<Integer> invalidLineNumbers = new ArrayList<>();
+        final ArrayList<Integer> duplicateLineNumbers = new ArrayList<>();
+        int importedCount = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            if (isBlank(lines.get(i)) || (isCsv && i == 0 && lines.get(i).trim().equalsIgnoreCase(CSV_HEADER))) {
+                continue;
+            }
+            final String[] person = decodedPersons[i];
+            if (person == null) {
+                invalidLineNumbers.add(i + DISPLAYED_INDEX_OFFSET);
+            } else if (getUniquePropertySharedWithOtherPerson(person, NO_PERSON_ID).isPresent()) {
+                duplicateLineNumbers.add(i + DISPLAYED_INDEX_OFFSET);
+            } else {
+                appendPersonToModel(person);
+                saveChangesToStorage(JOURNAL_RECORD_ADD, PERSON_SLOTS.size() - 1);
+                importedCount++;
+            }
+        }
+
+        if (isImportedInOwnBatch && importedCount == 0) {
+            endBatch();
+        } else if (isImportedInOwnBatch && !tryCommitBatch()) {
+            return String.format(MESSAGE_BATCH_COMMIT_FAILED, storageFilePath, importedCount);
+        }
+        return getMessageForImportedPersons(filePath, importedCount, invalidLineNumbers, duplicateLineNumbers);
+    }
+
+    /**
+     * Decodes the lines of a file to import in parallel, across all available processors.
+     *
+     * @param lines of the file
+     * @param isCsv whether the lines are in the CSV format rather than the storage format
+     * @return the person decoded from each line, at the same position as the line; null if it is not valid
+     */
+    private static String[][] decodeImportedLines(List<String> lines, boolean isCsv) {
+        final String[][] decodedPersons = new String[lines.size()][];
+        IntStream.range(0, lines.size()).parallel().forEach(i -> {
+            final Optional<String[]> person = isCsv ? decodePersonFromCsvLine(lines.get(i))
+                                                    : decodePersonFromString(lines.get(i));
+            decodedPersons[i] = person.orElse(null);
+        });
+        return decodedPersons;
+    }
+
+    /**
+     * Constructs a feedback message for an import, listing the lines that were not imported.
+     *
+     * @param filePath file imported from
+     * @param importedCount number of persons imported
+     * @param invalidLineNumbers line numbers of lines that are not valid persons
+     * @param duplicateLineNumbers line numbers of persons who were not imported as duplicates
+     * @return import feedback message
+     */
+    private static String getMessageForImportedPersons(String filePath, int importedCount,
+                                                       ArrayList<Integer> invalidLineNumbers,
+                                                       ArrayList<Integer> duplicateLineNumbers) {
+        final StringBuilder message = new StringBuilder(String.format(MESSAGE_IMPORTED, importedCount, filePath));
+        if (!invalidLineNumbers.isEmpty()) {
+            message.append(LS).append(String.format(MESSAGE_IMPORT_INVALID_LINES,
+                                                    joinLineNumbers(invalidLineNumbers)));
+        }
+        if (!duplicateLineNumbers.isEmpty()) {
+            message.append(LS).append(String.format(MESSAGE_IMPORT_DUPLICATE_LINES,
+                                                    joinLineNumbers(duplicateLineNumbers)));
+        }
+        return message.toString();
+    }
+
+    /**
+     * Joins the line numbers into a single string for display.
+     */
+    private static String joinLineNumbers(ArrayList<Integer> lineNumbers) {
+        final StringBuilder joined = new StringBuilder();
+        for (int lineNumber : lineNumbers) {
+            if (joined.length() > 0) {
+                joined.append(IMPORT_LINE_NUMBER_SEPARATOR);
+            }
+            joined.append(lineNumber);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Writes all persons, or only those in the last shown listing, to the file (specified by the command args)
+     * in the given format. Persons are written straight from the model as they are encoded, so that no copy of
+     * the address book is made. The file is written in full before it replaces any existing file.
+     *
+     * @param commandArgs full command args string from the user
+     * @return feedback display message for the operation result
+     */
+    private static String executeExportPersons(String commandArgs) {
+        final ArrayList<String> args = splitByWhitespace(commandArgs);
+        final String filePath = args.get(0);
+        Optional<ExportFormat> format = Optional.of(getExportFormatByFileExtension(filePath));
+        boolean isListedOnly = false;
+        for (String arg : args.subList(1, args.size())) {
+            if (arg.equals(EXPORT_LISTED_ONLY_WORD)) {
+                isListedOnly = true;
+            } else {
+                format = getExportFormatByName(arg);
+            }
+        }
+        if (filePath.isEmpty() || !format.isPresent()) {
+            return getMessageForInvalidCommandInput(COMMAND_EXPORT_WORD, getUsageInfoForExportCommand());
+        }
+
+        final Path exportFile;
+        try {
+            exportFile = Paths.get(filePath);
+        } catch (InvalidPathException ipe) {
+            return String.format(MESSAGE_EXPORT_WRITE_FAILED, filePath);
+        }
+        final Path snapshotFile = Paths.get(filePath + SNAPSHOT_FILE_SUFFIX);
+        if (isStorageFileOrKeptWithIt(exportFile) || isStorageFileOrKeptWithIt(snapshotFile)) {
+            return String.format(MESSAGE_EXPORT_TO_STORAGE_FILE, filePath);
+        }
+        try {
+            final int exportedCount;
+            try (BufferedWriter out = Files.newBufferedWriter(snapshotFile)) {
+                exportedCount = writeExportedPersons(out, format.get(), isListedOnly);
+            }
+            replaceFileAtomically(snapshotFile, exportFile);
+            return String.format(MESSAGE_EXPORTED, exportedCount, filePath);
+        } catch (IOException ioe) {
+            try {
+                Files.deleteIfExists(snapshotFile);
+            } catch (IOException deleteFailure) {
+                // left behind; overwritten by the next export to the same file
+            }
+            return String.format(MESSAGE_EXPORT_WRITE_FAILED, filePath);
+        }
+    }
+
+    /**
+     * Returns true if the given file is the storage file or one of the files kept with it: the journal, and
+     * the temporary files written while compacting or saving. Writing any of them, e.g. by exporting to it,
+     * would overwrite persons not exported or, in memory-mapped storage mode, replace the mapped file.
+     */
+    private static boolean isStorageFileOrKeptWithIt(Path file) {
+        final Path absoluteFile = file.toAbsolutePath().normalize();
+        for (String suffix : new String[] {"", JOURNAL_FILE_SUFFIX, COMPACTION_FILE_SUFFIX, SNAPSHOT_FILE_SUFFIX}) {
+            final Path storageFile = Paths.get(storageFilePath + suffix);
+            if (absoluteFile.equals(storageFile.toAbsolutePath().normalize())) {
+                return true;
+            }
+            try {
+                if (Files.exists(file) && Files.exists(storageFile) && Files.isSameFile(file, storageFile)) {
+                    return true; // e.g. a link to the storage file
+                }
+            } catch (IOException ioe) {
+                // cannot tell; the paths differ
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the export format for the file: CSV or JSON for files with those extensions, otherwise native.
+     */
+    private static ExportFormat getExportFormatByFileExtension(String filePath) {
+        if (filePath.endsWith(CSV_FILE_EXTENSION)) {
+            return ExportFormat.CSV;
+        }
+        return filePath.endsWith(JSON_FILE_EXTENSION) ? ExportFormat.JSON : ExportFormat.NATIVE;
+    }
+
+    /**
+     * Returns the export format with the given name, ignoring case.
+     */
+    private static Optional<ExportFormat> getExportFormatByName(String name) {
+        for (ExportFormat format : ExportFormat.values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Writes all persons in the address book, or only those in the last shown listing that are still in it,
+     * in the given format. Persons are written in the order they are listed.
+     *
+     * @param out to write to
+     * @param format to write the persons in
+     * @param isListedOnly whether to write only the persons in the last shown listing
+     * @return number of persons written
+     */
+    private static int writeExportedPersons(BufferedWriter out, ExportFormat format, boolean isListedOnly)
+            throws IOException {
+        final Session session = CURRENT_SESSION.get();
+        if (format == ExportFormat.CSV) {
+            out.write(CSV_HEADER);
+            out.newLine();
+        } else if (format == ExportFormat.JSON) {
+            out.write('[');
+        }
+
+        final PersonSlotsSnapshot slots = getPersonSlotsSnapshot(session);
+        int exportedCount = 0;
+        // until something is listed, the listing is of all persons
+        if (isListedOnly && (session.latestPersonListingView != null || session.latestPersonListingSnapshot != null)) {
+            final List<Integer> listedPersonIds = session.latestPersonListingView != null
+                    ? session.latestPersonListingView
+                    : session.latestPersonListingSnapshot.getIdsOfPersonsInSlots(session.latestPersonListingStart,
+                                                                                 session.latestPersonListingEnd);
+            for (int personId : listedPersonIds) {
+                final int slot = slots.getSlotOfPerson(personId);
+                if (slot >= 0) {
+                    writeExportedPerson(out, format, slots.get(slot), exportedCount++);
+                }
+            }
+        } else {
+            for (String[] person : slots) {
+                if (person != null) {
+                    writeExportedPerson(out, format, person, exportedCount++);
+                }
+            }
+        }
+
+        if (format == ExportFormat.JSON) {
+            if (exportedCount > 0) {
+                out.newLine();
+            }
+            out.write(']');
+            out.newLine();
+        }
+        return exportedCount;
+    }
+
+    /**
+     * Writes a single person in the given format.
+     *
+     * @param out to write to
+     * @param format to write the person in
+     * @param person to write
+     * @param personsWrittenBefore number of persons already written
+     */
+    private static void writeExportedPerson(BufferedWriter out, ExportFormat format, String[] person,
+                                            int personsWrittenBefore) throws IOException {
+        switch (format) {
+        case CSV:
+            out.write(getNameFromPerson(person));
+            out.write(CSV_FIELD_SEPARATOR);
+            out.write(getPhoneFromPerson(person));
+            out.write(CSV_FIELD_SEPARATOR);
+            out.write(getEmailFromPerson(person));
+            out.newLine();
+            break;
+        case JSON:
+            if (personsWrittenBefore > 0) {
+                out.write(',');
+            }
+            out.newLine();
+            out.write('{');
+            for (PersonProperty property : PersonProperty.values()) {
+                if (property.ordinal() > 0) {
+                    out.write(',');
+                }
+                writeJsonString(out, property.name().toLowerCase());
+                out.write(':');
+                writeJsonString(out, person[property.ordinal()]);
+            }
+            out.write('}');
+            break;
+        default:
+            out.write(encodePersonToString(person));
+            out.newLine();
+        }
+    }
+
+    /**
+     * Writes the string as a JSON string literal, escaping the characters JSON requires to be escaped.
+     */
+    private static void writeJsonString(BufferedWriter out, String string) throws IOException {
+        out.write('"');
+        for (int i = 0; i < string.length(); i++) {
+            final char c = string.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < ' ') {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * Starts a batch. Changes made from now on are only saved when the batch is committed.
+     *
+     * @return feedback display message for the operation result
+     */
+    private static String executeBeginBatch() {
+        if (isBatchStarted) {
+            return MESSAGE_BATCH_ALREADY_STARTED;
+        }
+        beginBatch();
+        return MESSAGE_BATCH_STARTED;
+    }
+
+    /**
+     * Starts a batch, remembering the model as it is now so that the batch can be rolled back.
+     */
+    private static void beginBatch() {
+        isBatchStarted = true;
+        batchChangeCount = 0;
+        BATCH_JOURNAL_RECORDS.clear();
+        BATCH_CHANGED_SLOTS.clear();
+        isClearedInBatch = false;
+        personSlotsBeforeBatch = new ArrayList<>(PERSON_SLOTS);
+        personIdsBeforeBatch = new ArrayList<>(PERSON_IDS_BY_SLOT);
+    }
+
+    /**
+     * Saves all changes made since the batch was started with a single write.
+     * Rolls back the changes if they cannot be saved.
+     *
+     * @return feedback display message for the operation result
+     */
+    private static String executeCommitBatch() {
+        if (!isBatchStarted) {
+            return MESSAGE_BATCH_NOT_STARTED;
+        }
+
+        final int changeCount = batchChangeCount;
+        return tryCommitBatch() ? String.format(MESSAGE_BATCH_COMMITTED, changeCount)
+                                : String.format(MESSAGE_BATCH_COMMIT_FAILED, storageFilePath, changeCount);
+    }
+
+    /**
+     * Saves all changes made since the batch was started with a single write and ends the batch.
+     * Rolls back the changes if they cannot be saved.
+     *
+     * @return true if the changes were saved, false if they were rolled back
+     */
+    private static boolean tryCommitBatch() {
+        if (!trySaveBatchToStorage()) {
+            rollbackBatch();
+            return false;
+        }
+
+        endBatch();
+        if (isJournalEnabled) {
+            journalRecordCount += BATCH_JOURNAL_RECORDS.size();
+            compactJournalIfTooLong();
+        }
+        compactPersonSlotsIfMostlyEmpty();
+        return true;
+    }
+
+    /**
+     * Saves all changes made since the batch was started with a single write.
+     *
+     * @return true if the changes were saved, false if there was an error writing to the files
+     */
+    private static boolean trySaveBatchToStorage() {
+        if (isJournalEnabled) {
+            return tryAppendRecordsToJournal(BATCH_JOURNAL_RECORDS);
+        }
+        if (isMappedStorageEnabled) {
+            return isClearedInBatch
+                    ? tryRewriteMappedStorageFile()
+                    : tryWritePersonSlotsToMappedStorageFile(new ArrayList<>(BATCH_CHANGED_SLOTS));
+        }
+        if (isAsyncPersistenceEnabled) {
+            unpublishedChangeCount += batchChangeCount;
+            return true;
+        }
+        return trySavePersonsToFile(getAllPersonsInAddressBook(), storageFilePath);
+    }
+
+    /**
+     * Discards all changes made since the batch was started.
+     *
+     * @return feedback display message for the operation result
+     */
+    private static String executeRollbackBatch() {
+        if (!isBatchStarted) {
+            return MESSAGE_BATCH_NOT_STARTED;
+        }
+        return String.format(MESSAGE_BATCH_ROLLED_BACK, rollbackBatch());
+    }
+
+    /**
+     * Restores the model to the state it was in when the batch was started and ends the batch.
+     * Persons keep the slots and IDs they had, so the journal and the latest listing still refer to them.
+     *
+     * @return number of changes discarded
+     */
+    private static int rollbackBatch() {
+        restorePersonSlotsInModel(personSlotsBeforeBatch, personIdsBeforeBatch);
+        endBatch();
+        return batchChangeCount;
+    }
+
+    /**
+     * Ends the batch, forgetting the model as it was when the batch was started.
+     */
+    private static void endBatch() {
+        isBatchStarted = false;
+        personSlotsBeforeBatch = new ArrayList<>();
+        personIdsBeforeBatch = new ArrayList<>();
+    }
+
+    /**
+     * Shows the statistics recorded since the program started, if they are being recorded.
+     *
+     * @return feedback display message for the operation result
+     */
+    private static String executeShowStats() {
+        return isStatsEnabled ? String.join(LS, getStatsReportLines()) : MESSAGE_STATS_DISABLED;
+    }
+
+    /**
+     * Requests to terminate the program. Changes in a batch that has not been committed are discarded.
+     */
+    private static void executeExitProgramRequest() {
+        if (isBatchStarted) {
+            showToUser(String.format(MESSAGE_BATCH_ROLLED_BACK, rollbackBatch()));
+        }
+        if (isJournalEnabled) {
+            compactJournal();
+        }
+        exitProgram();
+    }
+
+    /*
+     * ===========================================
+     *               UI LOGIC
+     * ===========================================
+     */
+
+    /**
+     * Prompts for the command and reads the text entered by the user.
+     * Ignores lines with first non-whitespace char equal to {@link #INPUT_COMMENT_MARKER} (considered comments)
+     *
+     * @return full line entered by the user
+     */
+    private static String getUserInput() {
+        OUTPUT.print(LINE_PREFIX + "Enter command: ");
+        if (!isMoreInputAvailable()) {
+            OUTPUT.flush();
+        }
+        String inputLine = SCANNER.nextLine();
+        // silently consume all blank and comment lines
+        while (inputLine.trim().isEmpty() || inputLine.trim().charAt(0) == INPUT_COMMENT_MARKER) {
+            inputLine = SCANNER.nextLine();
+        }
+        return inputLine;
+    }
+
+    /**
+     * Returns true if more input can be read without waiting for the user, e.g. the rest of a script given
+     * through I/O redirection. Input already read ahead by the scanner is not counted.
+     */
+    private static boolean isMoreInputAvailable() {
+        try {
+            return System.in.available() > 0;
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+   /*
+    * NOTE : =============================================================
+    * Note how the method below uses Java 'Varargs' feature so that the
+    * method can accept a varying number of message parameters.
+    * ====================================================================
+    */
+
+    /**
+     * Shows a message to the user
+     *
+     * Notice: Java new feature VarArgs is being used here.
+     */
+    private static void showToUser(String... message) {
+        final PrintStream output = CURRENT_SESSION.get().output;
+        for (String m : message) {
+            output.println(LINE_PREFIX + m);
+        }
+    }
+
+    /**
+     * Shows the given list of persons, who have the given IDs, to the user.
+     * The list will be indexed, starting from 1.
+     *
+     */
+    private static void showToUser(List<String[]> persons, ArrayList<Integer> personIds) {
+        showDisplayStringToUser(persons, DISPLAYED_INDEX_OFFSET);
+        updateLatestViewedPersonListing(personIds, 0);
+    }
+
+    /*
+     * NOTE : =============================================================
+     * Writing to a PrintStream costs much more per call than appending to
+     * a StringBuilder, as every call locks the stream and converts its
+     * characters to bytes on its own. Hence a listing is formatted into a
+     * StringBuilder, which is written out whenever it is about as large as
+     * the output buffer. Only that much of the listing is held in memory.
+     * ====================================================================
+     */
+
+    /**
+     * Shows the display string representation of the list of persons to the user.
+     *
+     * @param firstDisplayIndex displayed index of the first person in the list
+     */
+    private static void showDisplayStringToUser(List<String[]> persons, int firstDisplayIndex) {
+        final PrintStream output = CURRENT_SESSION.get().output;
+        final StringBuilder listing = new StringBuilder(OUTPUT_BUFFER_SIZE + OUTPUT_BUFFER_SIZE / 2);
+        listing.append(LINE_PREFIX);
+
+        for (int i = 0; i < persons.size(); i++) {
+            final String[] person = persons.get(i);
+            final int displayIndex = i + firstDisplayIndex;
+            listing.append('\t');
+            appendIndexedPersonListElementMessage(listing, displayIndex, person).append(LS);
+            if (listing.length() >= OUTPUT_BUFFER_SIZE) {
+                output.append(listing);
+                listing.setLength(0);
+            }
+        }
+
+        output.println(listing);
+    }
+
+    /**
+     * Appends a prettified listing element message to represent a person and their data.
+     *
+     * @param message to append to
+     * @param visibleIndex visible index for this listing
+     * @param person to show
+     * @return the message appended to
+     */
+    private static StringBuilder appendIndexedPersonListElementMessage(StringBuilder message, int visibleIndex,
+                                                                       String[] person) {
+        message.append(visibleIndex).append(DISPLAY_LIST_ELEMENT_INDEX_SUFFIX);
+        return appendFormattedPersonData(message, person);
+    }
+
+    /**
+     * Constructs a prettified string to show the user a person's data.
+     *
+     * @param person to show
+     * @return formatted message showing internal state
+     */
+    private static String getMessageForFormattedPersonData(String[] person) {
+        return appendFormattedPersonData(new StringBuilder(), person).toString();
+    }
+
+    /**
+     * Appends a prettified string to show the user a person's data.
+     *
+     * @param message to append to
+     * @param person to show
+     * @return the message appended to
+     */
+    private static StringBuilder appendFormattedPersonData(StringBuilder message, String[] person) {
+        return message.append(getNameFromPerson(person))
+                      .append(DISPLAY_PERSON_PHONE_LABEL).append(getPhoneFromPerson(person))
+                      .append(DISPLAY_PERSON_EMAIL_LABEL).append(getEmailFromPerson(person));
+    }
+
+    /**
+     * Updates the latest person listing view the user has seen.
+     *
+     * @param newListing IDs of the persons in the new listing
+     * @param offset number of persons in the full list before the first person of the new listing
+     */
+    private static void updateLatestViewedPersonListing(ArrayList<Integer> newListing, int offset) {
+        final Session session = CURRENT_SESSION.get();
+        // clone to insulate from future changes to arg list
+        session.latestPersonListingView = new ArrayList<>(newListing);
+        session.latestPersonListingOffset = offset;
+    }
+
+    /**
+     * Updates the latest person listing view the user has seen to a range of slots.
+     *
+     * @param slots snapshot of the slots the range is in
+     * @param start first slot in the range
+     * @param end slot after the last slot in the range
+     * @param offset number of persons in the full list before the first slot in the range
+     */
+    private static void updateLatestViewedPersonRange(PersonSlotsSnapshot slots, int start, int end, int offset) {
+        final Session session = CURRENT_SESSION.get();
+        session.latestPersonListingView = null;
+        session.latestPersonListingSnapshot = slots;
+        session.latestPersonListingOffset = offset;
+        session.latestPersonListingStart = start;
+        session.latestPersonListingEnd = end;
+    }
+
+    /**
+     * Retrieves the slot of the person identified by the displayed index from the last shown listing of persons.
+     *
+     * @param lastVisibleIndex displayed index from last shown person listing
+     * @return slot of that person, or -1 if the person is no longer in the address book
+     */
+    private static int getSlotByLastVisibleIndex(int lastVisibleIndex) {
+        final Session session = CURRENT_SESSION.get();
+        if (session.latestPersonListingView != null) {
+            final int personId = session.latestPersonListingView.get(getRealIndexByLastVisibleIndex(lastVisibleIndex));
+            return PERSON_SLOTS_BY_ID.getOrDefault(personId, -1);
+        }
+
+        if (session.latestPersonListingSnapshot == null) {
+            return getSlotOfPersonAtPosition(getRealIndexByLastVisibleIndex(lastVisibleIndex));
+        }
+        final int slot = session.latestPersonListingStart + getRealIndexByLastVisibleIndex(lastVisibleIndex);
+        return PERSON_SLOTS_BY_ID.getOrDefault(session.latestPersonListingSnapshot.getPersonId(slot), -1);
+    }
+
+    /**
+     * Returns the slot of the person at the given position in the full list of persons, skipping empty slots.
+     * Empty slots are left by deleted persons, and in memory-mapped storage mode also loaded from the file.
+     *
+     * @param position of the person in the full list, counting from 0
+     * @return slot of that person, or -1 if there are not that many persons
+     */
+    private static int getSlotOfPersonAtPosition(int position) {
+        if (personCount == PERSON_SLOTS.size()) {
+            return position < personCount ? position : -1;
+        }
+        int personsBefore = 0;
+        for (int slot = 0; slot < PERSON_SLOTS.size(); slot++) {
+            if (PERSON_SLOTS.get(slot) != null && personsBefore++ == position) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Converts from the last visible index to that person's actual index in the listing.
+     *
+     * @param lastVisibleIndex displayed index from last shown person listing
+     * @return the actual index in latestPersonListingView, or in the range of slots if the listing is a range.
+     */
+    private static int getRealIndexByLastVisibleIndex(int lastVisibleIndex) {
+        final Session session = CURRENT_SESSION.get();
+        return lastVisibleIndex - DISPLAYED_INDEX_OFFSET - session.latestPersonListingOffset;
+    }
+
+
+    /*
+     * ===========================================
+     *             STORAGE LOGIC
+     * ===========================================
+     */
+
+    /**
+     * Creates storage file if it does not exist. Shows feedback to user.
+     *
+     * @param filePath file to create if not present
+     */
+    private static void createFileIfMissing(String filePath) {
+        final File storageFile = new File(filePath);
+        if (storageFile.exists()) {
+            return;
+        }
+
+        showToUser(String.format(MESSAGE_ERROR_MISSING_STORAGE_FILE, filePath));
+
+        try {
+            storageFile.createNewFile();
+            showToUser(String.format(MESSAGE_STORAGE_FILE_CREATED, filePath));
+        } catch (IOException ioe) {
+            showToUser(String.format(MESSAGE_ERROR_CREATING_STORAGE_FILE, filePath));
+            exitProgram();
+        }
+    }
+
+    /*
+     * NOTE : =============================================================
+     * Loading a large file is done as a pipeline: while this thread reads
+     * the next chunk of lines, earlier chunks are decoded by other threads
+     * (CompletableFuture uses a shared pool with one thread per processor).
+     * Decoded chunks are collected in the order they were read, so the
+     * persons keep the order of the lines in the file.
+     * ====================================================================
+     */
+
+    /**
+     * Converts contents of a file into a list of persons. The file is read in the binary storage format if
+     * it is enabled, otherwise as plain text.
+     * Shows error messages and exits program if any errors in reading or decoding was encountered.
+     *
+     * @param filePath file to load from
+     * @return the list of decoded persons, in the format of an ArrayList of String[]
+     */
+    private static ArrayList<String[]> loadPersonsFromFile(String filePath) {
+        if (isBinaryStorageEnabled) {
+            return loadPersonsFromBinaryFile(filePath);
+        }
+
+        final int maxPendingChunks = STORAGE_LOAD_PENDING_CHUNKS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors();
+        final ArrayList<String[]> loadedPersons = new ArrayList<>();
+        final ArrayDeque<ArrayList<String>> pendingChunks = new ArrayDeque<>();
+        final ArrayDeque<CompletableFuture<Optional<ArrayList<String[]>>>> pendingDecodeResults = new ArrayDeque<>();
+
+        int collectedLineCount = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(filePath))) {
+            ArrayList<String> chunk = readLinesChunk(reader);
+            while (!chunk.isEmpty()) {
+                final ArrayList<String> chunkToDecode = chunk;
+                pendingChunks.add(chunkToDecode);
+                pendingDecodeResults.add(CompletableFuture.supplyAsync(() -> decodePersonsFromStrings(chunkToDecode)));
+
+                if (pendingChunks.size() >= maxPendingChunks) {
+                    collectedLineCount += collectDecodedChunk(loadedPersons, collectedLineCount,
+                                                              pendingChunks.remove(), pendingDecodeResults.remove());
+                }
+                chunk = readLinesChunk(reader);
+            }
+        } catch (IOException ioe) {
+            showToUser(String.format(MESSAGE_ERROR_READING_FROM_FILE, filePath));
+            exitProgram();
+        }
+
+        while (!pendingChunks.isEmpty()) {
+            collectedLineCount += collectDecodedChunk(loadedPersons, collectedLineCount,
+                                                      pendingChunks.remove(), pendingDecodeResults.remove());
+        }
+        return loadedPersons;
+    }
+
+    /**
+     * Reads up to {@link #STORAGE_LOAD_CHUNK_SIZE} lines from the reader. Line separators are removed.
+     *
+     * @return the lines read; empty if the end of the file has been reached
+     */
+    private static ArrayList<String> readLinesChunk(BufferedReader reader) throws IOException {
+        final ArrayList<String> lines = new ArrayList<>(STORAGE_LOAD_CHUNK_SIZE);
+        String line;
+        while (lines.size() < STORAGE_LOAD_CHUNK_SIZE && (line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    /**
+     * Waits for a chunk of lines to be decoded and appends the decoded persons to the loaded persons.
+     * Shows the number of the first invalid line and exits program if the chunk could not be decoded.
+     *
+     * @param loadedPersons persons decoded from all lines before the chunk
+     * @param linesBeforeChunk number of lines in the file before the chunk
+     * @param chunk lines that were decoded
+     * @param decodeResult result of decoding the chunk
+     * @return number of lines in the chunk
+     */
+    private static int collectDecodedChunk(ArrayList<String[]> loadedPersons, int linesBeforeChunk,
+                                           ArrayList<String> chunk,
+                                           CompletableFuture<Optional<ArrayList<String[]>>> decodeResult) {
+        final Optional<ArrayList<String[]>> decodedChunk = decodeResult.join();
+
+        if (!decodedChunk.isPresent()) {
+            final int firstLineNumberOfChunk = linesBeforeChunk + 1;
+            showToUser(String.format(MESSAGE_INVALID_STORAGE_FILE_CONTENT,
+                    firstLineNumberOfChunk + getIndexOfFirstUndecodablePerson(chunk)));
+            exitProgram();
+        }
+
+        loadedPersons.addAll(decodedChunk.get());
+        decodedPersonCount = loadedPersons.size();
+        return chunk.size();
+    }
+
+    /**
+     * Gets all lines in the specified file as a list of strings. Line separators are removed.
+     * Shows error messages and exits program if unable to read from file.
+     */
+    private static ArrayList<String> getLinesInFile(String filePath) {
+        ArrayList<String> lines = null;
+        try {
+            lines = new ArrayList<>(Files.readAllLines(Paths.get(filePath)));
+        } catch (FileNotFoundException fnfe) {
+            showToUser(String.format(MESSAGE_ERROR_MISSING_STORAGE_FILE, filePath));
+            exitProgram();
+        } catch (IOException ioe) {
+            showToUser(String.format(MESSAGE_ERROR_READING_FROM_FILE, filePath));
+            exitProgram();
+        }
+        return lines;
+    }
+
+    /**
+     * Saves all data to the file. Exits program if there is an error saving to file.
+     *
+     * @param filePath file for saving
+     */
+    private static void savePersonsToFile(ArrayList<String[]> persons, String filePath) {
+        if (!trySavePersonsToFile(persons, filePath)) {
+            showToUser(String.format(MESSAGE_ERROR_WRITING_TO_FILE, filePath));
+            exitProgram();
+        }
+    }
+
+    /**
+     * Saves all data to the file, in the binary storage format if it is enabled.
+     * The data is written to a temporary file first, which then replaces the file in a single step,
+     * so the file always holds either all of the old data or all of the new data.
+     *
+     * @param filePath file for saving
+     * @return true if the data was saved, false if there was an error saving to file
+     */
+    private static boolean trySavePersonsToFile(ArrayList<String[]> persons, String filePath) {
+        final long startNanos = System.nanoTime();
+        final Path snapshotFile = Paths.get(filePath + SNAPSHOT_FILE_SUFFIX);
+
+        try {
+            if (isBinaryStorageEnabled) {
+                writePersonsToBinaryFile(persons, snapshotFile);
+            } else {
+                writePersonsToTextFile(persons, snapshotFile);
+            }
+            final long bytesWritten = isStatsEnabled ? Files.size(snapshotFile) : 0;
+            replaceFileAtomically(snapshotFile, Paths.get(filePath));
+            recordStorageOperation(StorageOperation.SAVE, startNanos, bytesWritten);
+            return true;
+        } catch (IOException ioe) {
+            try {
+                Files.deleteIfExists(snapshotFile);
+            } catch (IOException deleteFailure) {
+                // left behind; overwritten by the next save
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Writes the persons to a file in the plain text storage format, one line per person.
+     * Each person is written as soon as it is encoded, without collecting all lines first.
+     *
+     * @param file file to write to
+     */
+    private static void writePersonsToTextFile(ArrayList<String[]> persons, Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            for (String[] person : persons) {
+                out.write(encodePersonToString(person));
+                out.newLine();
+            }
+        }
+    }
 
     /*
-     * ===========================================
-     *           COMMAND LOGIC
-     * ===========================================
+     * NOTE : =============================================================
+     * The binary storage format below stores each field as its length in
+     * bytes followed by its UTF-8 bytes, so loading needs neither line
+     * splitting nor the search for data prefixes, and saving needs no
+     * String.format. The length is written 7 bits per byte (the highest
+     * bit marks that more bytes follow), so most fields take one byte.
+     * ====================================================================
      */
 
     /**
-     * Executes the command as specified by the {@code userInputString}
+     * Loads the persons in a binary storage file. An empty file holds no persons.
+     * Shows error messages and exits program if unable to read from the file or if it has invalid content.
      *
-     * @param userInputString  raw input from user
-     * @return  feedback about how the command was executed
+     * @param filePath binary storage file to load
+     * @return the persons in the file
      */
-    private static String executeCommand(String userInputString) {
-        final String[] commandTypeAndParams = splitCommandWordAndArgs(userInputString);
-        final String commandType = commandTypeAndParams[0];
-        final String commandArgs = commandTypeAndParams[1];
+    private static ArrayList<String[]> loadPersonsFromBinaryFile(String filePath) {
+        final ArrayList<String[]> loadedPersons = new ArrayList<>();
+        final Path file = Paths.get(filePath);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            final long fileSize = Files.size(file);
+            if (fileSize == 0) {
+                return loadedPersons;
+            }
 
-        switch (commandType) {
-        case COMMAND_ADD_WORD:
-            return executeAddPerson(commandArgs);
-        case COMMAND_FIND_WORD:
-            return executeFindPersons(commandArgs);
-        case COMMAND_LIST_WORD:
-            return executeListAllPersonsInAddressBook();
-        case COMMAND_UPDATE_WORD:
-            return executeUpdatePerson(commandArgs);
-        case COMMAND_DELETE_WORD:
-            return executeDeletePerson(commandArgs);
-        case COMMAND_CLEAR_WORD:
-            return executeClearAddressBook();
-        case COMMAND_HELP_WORD:
-            return getUsageInfoForAllCommands();
-        case COMMAND_EXIT_WORD:
-            executeExitProgramRequest();
+            if (in.readInt() != BINARY_STORAGE_MAGIC_NUMBER || in.readInt() != BINARY_STORAGE_VERSION) {
+                showToUser(String.format(MESSAGE_INVALID_BINARY_STORAGE_FILE, filePath));
+                exitProgram();
+            }
+
+            final int personCount = in.readInt();
+            for (int i = 0; i < personCount; i++) {
+                final String name = readBinaryStorageField(in, fileSize);
+                final String phone = readBinaryStorageField(in, fileSize);
+                final String email = readBinaryStorageField(in, fileSize);
+                final String[] person = makePersonFromData(name, phone, email);
+                if (!isPersonDataValid(person)) {
+                    throw new EOFException();
+                }
+                loadedPersons.add(person);
+                if (loadedPersons.size() % STORAGE_LOAD_CHUNK_SIZE == 0) {
+                    decodedPersonCount = loadedPersons.size();
+                }
+            }
+
+            if (in.read() != -1) {
+                throw new EOFException(); // more data than persons
+            }
+        } catch (EOFException eofe) {
+            showToUser(String.format(MESSAGE_INVALID_BINARY_STORAGE_FILE_CONTENT, loadedPersons.size() + 1));
+            exitProgram();
+        } catch (IOException ioe) {
+            showToUser(String.format(MESSAGE_ERROR_READING_FROM_FILE, filePath));
+            exitProgram();
+        }
+        return loadedPersons;
+    }
+
+    /**
+     * Writes the persons to a file in the binary storage format.
+     *
+     * @param file file to write to
+     */
+    private static void writePersonsToBinaryFile(ArrayList<String[]> persons, Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(BINARY_STORAGE_MAGIC_NUMBER);
+            out.writeInt(BINARY_STORAGE_VERSION);
+            out.writeInt(persons.size());
+            for (String[] person : persons) {
+                writeBinaryStorageField(out, getNameFromPerson(person));
+                writeBinaryStorageField(out, getPhoneFromPerson(person));
+                writeBinaryStorageField(out, getEmailFromPerson(person));
+            }
+        }
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 field from a binary storage file.
+     *
+     * @param maxLength length beyond which the field cannot fit in the file
+     * @throws EOFException if the file ends within the field or the length is out of range
+     */
+    private static String readBinaryStorageField(DataInputStream in, long maxLength) throws IOException {
+        int length = 0;
+        int shift = 0;
+        int lengthByte;
+        do {
+            lengthByte = in.readUnsignedByte();
+            length |= (lengthByte & 0x7F) << shift;
+            shift += 7;
+        } while ((lengthByte & 0x80) != 0 && shift < Integer.SIZE);
+
+        if (length < 0 || length > maxLength) {
+            throw new EOFException();
+        }
+        final byte[] field = new byte[length];
+        in.readFully(field);
+        return new String(field, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a field to a binary storage file as its length in bytes followed by its UTF-8 bytes.
+     */
+    private static void writeBinaryStorageField(DataOutputStream out, String field) throws IOException {
+        final byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length;
+        while (length >= 0x80) {
+            out.write((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.write(length);
+        out.write(bytes);
+    }
+
+    /**
+     * Converts a storage file into another storage file, each in the format given by its file extension,
+     * then exits. Shows error messages and exits program if either file cannot be used.
+     *
+     * @param sourceFilePath storage file to convert
+     * @param targetFilePath file to save the converted storage file to
+     */
+    private static void convertStorageFile(String sourceFilePath, String targetFilePath) {
+        if (!isValidFilePath(targetFilePath)) {
+            showToUser(String.format(MESSAGE_INVALID_FILE, targetFilePath));
+            exitProgram();
+        }
+
+        isBinaryStorageEnabled = isBinaryStorageFilePath(sourceFilePath);
+        final ArrayList<String[]> persons = loadPersonsFromFile(sourceFilePath);
+        isBinaryStorageEnabled = isBinaryStorageFilePath(targetFilePath);
+        savePersonsToFile(persons, targetFilePath);
+
+        showToUser(String.format(MESSAGE_STORAGE_FILE_CONVERTED, persons.size(), sourceFilePath, targetFilePath));
+        exitProgram();
+    }
+
+    /**
+     * Returns true if the file extension of the path is that of the binary storage format.
+     */
+    private static boolean isBinaryStorageFilePath(String filePath) {
+        return filePath.endsWith(BINARY_STORAGE_FILE_EXTENSION);
+    }
+
+    /**
+     * Persists the latest change made to the model. Changes made in a batch are kept until it is committed.
+     * In journaled storage mode, only the record describing the change is appended to the journal.
+     * In memory-mapped storage mode, only the record of the changed slot is overwritten.
+     * In asynchronous persistence mode, the change is left to the background writer to save.
+     * Otherwise, all data is saved to the storage file.
+     *
+     * @param changeType journal record type marker of the change
+     * @param changedSlot slot of the added, updated or deleted person (ignored for a clear)
+     */
+    private static void saveChangesToStorage(String changeType, int changedSlot) {
+        final boolean isClear = changeType.equals(JOURNAL_RECORD_CLEAR);
+        if (isBatchStarted) {
+            batchChangeCount++;
+            if (isJournalEnabled) {
+                BATCH_JOURNAL_RECORDS.add(makeJournalRecord(changeType, changedSlot));
+            }
+            if (isMappedStorageEnabled && isClear) {
+                isClearedInBatch = true;
+            } else if (isMappedStorageEnabled) {
+                BATCH_CHANGED_SLOTS.add(changedSlot);
+            }
+        } else if (isJournalEnabled) {
+            appendRecordToJournal(makeJournalRecord(changeType, changedSlot));
+        } else if (isMappedStorageEnabled) {
+            final boolean isSaved = isClear
+                    ? tryRewriteMappedStorageFile()
+                    : tryWritePersonSlotsToMappedStorageFile(Collections.singletonList(changedSlot));
+            if (!isSaved) {
+                showToUser(String.format(MESSAGE_ERROR_WRITING_TO_FILE, storageFilePath));
+                exitProgram();
+            }
+        } else if (isAsyncPersistenceEnabled) {
+            unpublishedChangeCount++;
+        } else {
+            savePersonsToFile(getAllPersonsInAddressBook(), storageFilePath);
+        }
+    }
+
+    /**
+     * Constructs the journal record describing a change to the person in the given slot.
+     *
+     * @param changeType journal record type marker of the change
+     * @param changedSlot slot of the added, updated or deleted person (ignored for a clear)
+     */
+    private static String makeJournalRecord(String changeType, int changedSlot) {
+        switch (changeType) {
+        case JOURNAL_RECORD_ADD:
+            return String.join(JOURNAL_RECORD_SEPARATOR, changeType, encodePersonToString(PERSON_SLOTS.get(changedSlot)));
+        case JOURNAL_RECORD_UPDATE:
+            return String.join(JOURNAL_RECORD_SEPARATOR, changeType, Integer.toString(changedSlot),
+                               encodePersonToString(PERSON_SLOTS.get(changedSlot)));
+        case JOURNAL_RECORD_DELETE:
+            return String.join(JOURNAL_RECORD_SEPARATOR, changeType, Integer.toString(changedSlot));
         default:
-            return getMessageForInvalidCommandInput(commandType, getUsageInfoForAllCommands());
+            return changeType;
+        }
+    }
+
+    /**
+     * Appends a single record to the journal. Compacts the journal if it has grown too long.
+     * Exits program if there is an error writing to the journal.
+     */
+    private static void appendRecordToJournal(String record) {
+        if (!tryAppendRecordsToJournal(Collections.singletonList(record))) {
+            showToUser(String.format(MESSAGE_ERROR_WRITING_TO_FILE, getJournalFilePath()));
+            exitProgram();
+        }
+
+        journalRecordCount++;
+        compactJournalIfTooLong();
+    }
+
+    /**
+     * Appends the records to the journal with a single write, and makes them durable as required by the
+     * durability level.
+     * If the write fails, the journal is cut back to its previous length so that no record is half-written.
+     *
+     * @return true if all records were appended, false if there was an error writing to the journal
+     */
+    private static boolean tryAppendRecordsToJournal(List<String> records) {
+        final long startNanos = System.nanoTime();
+        final Path journalFile = Paths.get(getJournalFilePath());
+        long journalSizeBeforeAppend = 0;
+        try {
+            journalSizeBeforeAppend = Files.exists(journalFile) ? Files.size(journalFile) : 0;
+            final StringBuilder recordLines = new StringBuilder();
+            for (String record : records) {
+                recordLines.append(record).append(System.lineSeparator());
+            }
+
+            try (FileChannel journal = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                                                        StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                final ByteBuffer bytes = ByteBuffer.wrap(recordLines.toString().getBytes(StandardCharsets.UTF_8));
+                while (bytes.hasRemaining()) {
+                    journal.write(bytes);
+                }
+                if (durability == Durability.COMMIT) {
+                    journal.force(false);
+                }
+                recordStorageOperation(StorageOperation.JOURNAL_APPEND, startNanos, bytes.limit());
+            }
+            if (durability == Durability.PERIODIC) {
+                addFilesToSync(journalFile);
+            }
+            return true;
+        } catch (IOException ioe) {
+            try (FileChannel journal = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+                journal.truncate(journalSizeBeforeAppend);
+            } catch (IOException truncateFailure) {
+                // nothing more can be done; the journal could not even be opened
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Compacts the journal if too many records have been appended to it since it was last compacted.
+     */
+    private static void compactJournalIfTooLong() {
+        if (journalRecordCount >= JOURNAL_COMPACTION_THRESHOLD) {
+            compactJournal();
+        }
+    }
+
+    /*
+     * NOTE : =============================================================
+     * Compaction writes the new storage file to a temporary file, deletes
+     * the journal and only then renames the temporary file to the storage
+     * file. If the program is interrupted half way, the files left behind
+     * tell us which step was reached (see the recovery method below), so
+     * a change is never lost and never replayed twice.
+     * ====================================================================
+     */
+
+    /**
+     * Saves all data to the storage file and empties the journal.
+     * The person slots are compacted too, since journal records refer to persons by slot.
+     * Exits program if there is an error writing to the files.
+     */
+    private static void compactJournal() {
+        compactPersonSlots();
+        final Path compactionFile = Paths.get(storageFilePath + COMPACTION_FILE_SUFFIX);
+        savePersonsToFile(getAllPersonsInAddressBook(), compactionFile.toString());
+
+        try {
+            Files.deleteIfExists(Paths.get(getJournalFilePath()));
+            replaceFileAtomically(compactionFile, Paths.get(storageFilePath));
+        } catch (IOException ioe) {
+            showToUser(String.format(MESSAGE_ERROR_WRITING_TO_FILE, storageFilePath));
+            exitProgram();
+        }
+        journalRecordCount = 0;
+    }
+
+    /**
+     * Finishes or rolls back a journal compaction that was interrupted before it completed.
+     * A leftover temporary file is complete only if the journal has already been deleted.
+     */
+    private static void recoverInterruptedJournalCompaction() {
+        final Path compactionFile = Paths.get(storageFilePath + COMPACTION_FILE_SUFFIX);
+        if (!Files.exists(compactionFile)) {
+            return;
+        }
+
+        try {
+            if (Files.exists(Paths.get(getJournalFilePath()))) {
+                Files.delete(compactionFile);
+            } else {
+                replaceFileAtomically(compactionFile, Paths.get(storageFilePath));
+            }
+        } catch (IOException ioe) {
+            showToUser(String.format(MESSAGE_ERROR_WRITING_TO_FILE, storageFilePath));
+            exitProgram();
+        }
+    }
+
+    /**
+     * Applies all changes recorded in the journal (if any) to the model. Does not save to file.
+     * A last record cut short by an interrupted append is ignored.
+     * Shows error messages and exits program if any complete record is invalid.
+     */
+    private static void replayJournal() {
+        final String journalFilePath = getJournalFilePath();
+        if (!Files.exists(Paths.get(journalFilePath))) {
+            return;
+        }
+
+        for (String record : getCompleteRecordsInJournal(journalFilePath)) {
+            if (!applyJournalRecord(record)) {
+                showToUser(String.format(MESSAGE_INVALID_JOURNAL_CONTENT, journalFilePath));
+                exitProgram();
+            }
+        }
+    }
+
+    /**
+     * Returns the complete records in the journal: the lines that end with a line break. Every record is
+     * appended together with its line break, so a last line without one was cut short when the program
+     * stopped while appending it, and is left out even if what was written of it reads as a valid record.
+     * Shows an error message and exits program if unable to read the journal.
+     */
+    private static List<String> getCompleteRecordsInJournal(String journalFilePath) {
+        byte[] journal = new byte[0];
+        try {
+            journal = Files.readAllBytes(Paths.get(journalFilePath));
+        } catch (IOException ioe) {
+            showToUser(String.format(MESSAGE_ERROR_READING_FROM_FILE, journalFilePath));
+            exitProgram();
+        }
+
+        int completeLength = journal.length;
+        while (completeLength > 0 && journal[completeLength - 1] != '\n') {
+            completeLength--;
+        }
+        if (completeLength == 0) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(new String(journal, 0, completeLength, StandardCharsets.UTF_8).split("\\R"));
+    }
+
+    /**
+     * Applies a single journal record to the model. Does not save to file.
+     *
+     * @param record journal record to apply
+     * @return true if the record is valid and was applied
+     */
+    private static boolean applyJournalRecord(String record) {
+        final String[] typeAndArgs = record.split(JOURNAL_RECORD_SEPARATOR, 2);
+        final String recordArgs = typeAndArgs.length == 2 ? typeAndArgs[1] : "";
+
+        try {
+            switch (typeAndArgs[0]) {
+            case JOURNAL_RECORD_ADD:
+                final Optional<String[]> added = decodePersonFromString(recordArgs);
+                added.ifPresent(AddressBook::appendPersonToModel);
+                return added.isPresent();
+            case JOURNAL_RECORD_UPDATE:
+                final String[] slotAndPerson = recordArgs.split(JOURNAL_RECORD_SEPARATOR, 2);
+                final int updatedSlot = Integer.parseInt(slotAndPerson[0]);
+                final Optional<String[]> updated = decodePersonFromString(slotAndPerson[1]);
+                if (!updated.isPresent() || PERSON_SLOTS.get(updatedSlot) == null) {
+                    return false;
+                }
+                replacePersonInModel(updatedSlot, updated.get());
+                return true;
+            case JOURNAL_RECORD_DELETE:
+                final int deletedSlot = Integer.parseInt(recordArgs);
+                if (PERSON_SLOTS.get(deletedSlot) == null) {
+                    return false;
+                }
+                removePersonFromModel(deletedSlot);
+                return true;
+            case JOURNAL_RECORD_CLEAR:
+                clearModel();
+                return true;
+            default:
+                return false;
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return false;
         }
     }
 
     /**
-     * Splits raw user input into command word and command arguments string
+     * Returns the path of the journal that belongs to the storage file.
+     */
+    private static String getJournalFilePath() {
+        return storageFilePath + JOURNAL_FILE_SUFFIX;
+    }
+
+    /*
+     * NOTE : =============================================================
+     * A file is made durable by forcing it to disk (fsync). After a file
+     * is renamed, its directory must also be forced to disk, or the rename
+     * itself can be lost in a crash. Some platforms cannot open a
+     * directory for forcing; there the rename is durable once the file
+     * system gets to it.
+     * ====================================================================
+     */
+
+    /**
+     * Replaces the target file with a newly written file in a single step (an atomic rename), so that the
+     * target file is never missing or half-written, even if the program or the system crashes.
+     * Makes the new file and the rename durable as required by the durability level.
      *
-     * @return  size 2 array; first element is the command type and second element is the arguments string
+     * @param newFile fully written file to replace the target file with
+     * @param targetFile file to be replaced
      */
-    private static String[] splitCommandWordAndArgs(String rawUserInput) {
-        final String[] split =  rawUserInput.trim().split("\\s+", 2);
-        return split.length == 2 ? split : new String[] { split[0] , "" }; // else case: no parameters
+    private static void replaceFileAtomically(Path newFile, Path targetFile) throws IOException {
+        if (durability == Durability.COMMIT) {
+            forceToDisk(newFile);
+        }
+
+        try {
+            Files.move(newFile, targetFile, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException amnse) {
+            Files.move(newFile, targetFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        final Path directory = targetFile.toAbsolutePath().getParent();
+        if (durability == Durability.COMMIT) {
+            forceDirectoryToDisk(directory);
+        } else if (durability == Durability.PERIODIC) {
+            addFilesToSync(targetFile, directory);
+        }
     }
 
     /**
-     * Constructs a generic feedback message for an invalid command from user, with instructions for correct usage.
-     *
-     * @param correctUsageInfo message showing the correct usage
-     * @return invalid command args feedback message
+     * Forces all changes made to the file to disk.
      */
-    private static String getMessageForInvalidCommandInput(String userCommand, String correctUsageInfo) {
-        return String.format(MESSAGE_INVALID_COMMAND_FORMAT, userCommand, correctUsageInfo);
+    private static void forceToDisk(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
     }
 
     /**
-     * Adds a person (specified by the command args) to the address book.
-     * The entire command arguments string is treated as a string representation of the person to add.
-     *
-     * @param commandArgs full command args string from the user
-     * @return feedback display message for the operation result
+     * Forces the directory entries (e.g. the result of a rename) in the directory to disk, where supported.
      */
-    private static String executeAddPerson(String commandArgs) {
-        // try decoding a person from the raw args
-        final Optional<HashMap<PersonProperty, String>> decodeResult = decodePersonFromString(commandArgs);
-
-        // checks if args are valid (decode result will not be present if the person is invalid)
-        if (!decodeResult.isPresent()) {
-            return getMessageForInvalidCommandInput(COMMAND_ADD_WORD, getUsageInfoForAddCommand());
+    private static void forceDirectoryToDisk(Path directory) {
+        try {
+            forceToDisk(directory);
+        } catch (IOException ioe) {
+            // directories cannot be opened on this platform
         }
+    }
 
-        // add the person as specified
-        final HashMap<PersonProperty, String> personToAdd = decodeResult.get();
-        addPersonToAddressBook(personToAdd);
-        return getMessageForSuccessfulAddPerson(personToAdd);
+    /**
+     * Marks the files as changed since the last periodic sync.
+     */
+    private static void addFilesToSync(Path... files) {
+        synchronized (FILES_TO_SYNC) {
+            FILES_TO_SYNC.addAll(Arrays.asList(files));
+        }
     }
 
     /**
-     * Constructs a feedback message for a successful add person command execution.
-     *
-     * @see #executeAddPerson(String)
-     * @param addedPerson person who was successfully added
-     * @return successful add person feedback message
+     * Starts the thread that forces the files changed since the last sync to disk at every sync interval.
      */
-    private static String getMessageForSuccessfulAddPerson(HashMap<PersonProperty, String> addedPerson) {
-        return String.format(MESSAGE_ADDED,
-                getNameFromPerson(addedPerson), getPhoneFromPerson(addedPerson), getEmailFromPerson(addedPerson));
+    private static void startPeriodicSync() {
+        final Thread syncThread = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(syncInterval);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                syncChangedFiles();
+            }
+        }, "addressbook-sync");
+        syncThread.setDaemon(true);
+        syncThread.start();
     }
 
     /**
-     * Finds and lists all persons in address book whose name contains any of the argument keywords.
-     * Keyword matching is case sensitive.
-     *
-     * @param commandArgs full command args string from the user
-     * @return feedback display message for the operation result
+     * Forces the files changed since the last periodic sync to disk. Does nothing unless the durability level
+     * is fsync-periodic. A file that was replaced or deleted after it was changed is skipped; any file that
+     * replaced it is synced instead.
      */
-    private static String executeFindPersons(String commandArgs) {
-        final Set<String> keywords = extractKeywordsFromFindPersonArgs(commandArgs);
-        final ArrayList<HashMap<PersonProperty, String>> personsFound = getPersonsWithNameContainingAnyKeyword(keywords);
-        showToUser(personsFound);
-        return getMessageForPersonsDisplayedSummary(personsFound);
+    private static void syncChangedFiles() {
+        final ArrayList<Path> filesToSync;
+        synchronized (FILES_TO_SYNC) {
+            filesToSync = new ArrayList<>(FILES_TO_SYNC);
+            FILES_TO_SYNC.clear();
+        }
+
+        for (Path file : filesToSync) {
+            try {
+                forceToDisk(file);
+            } catch (IOException ioe) {
+                // replaced, deleted, or a directory that cannot be opened on this platform
+            }
+        }
+
+        if (isMappedStorageSyncPending) {
+            isMappedStorageSyncPending = false;
+            mappedStorage.force();
+        }
     }
 
+    /*
+     * NOTE : =============================================================
+     * In asynchronous persistence mode, the background writer saves the
+     * published snapshot of the person slots (see publishedPersonSlots),
+     * which is only published after a change made outside a batch or when
+     * a batch ends. So the writer never saves the changes of a batch that
+     * is not committed yet, and it never needs a lock of the model, so the
+     * program can always wait for it to stop. MODEL_LOCK is only used to
+     * count changes and to wake up the writer.
+     * ====================================================================
+     */
+
     /**
-     * Constructs a feedback message to summarise an operation that displayed a listing of persons.
-     *
-     * @param personsDisplayed used to generate summary
-     * @return summary message for persons displayed
+     * Starts the background writer thread of the asynchronous persistence mode. The caller makes sure that
+     * unsaved changes are saved when the JVM shuts down, by stopping it in a shutdown hook.
      */
-    private static String getMessageForPersonsDisplayedSummary(ArrayList<HashMap<PersonProperty, String>> personsDisplayed) {
-        return String.format(MESSAGE_PERSONS_FOUND_OVERVIEW, personsDisplayed.size());
+    private static void startAsyncPersistence() {
+        asyncPersistenceThread = new Thread(AddressBook::runAsyncPersistence, "addressbook-writer");
+        asyncPersistenceThread.setDaemon(true);
+        asyncPersistenceThread.start();
     }
 
     /**
-     * Extracts keywords from the command arguments given for the find persons command.
+     * Records that changes were made to the model that are yet to be saved, and wakes up the background
+     * writer if it should start counting down to the next save or save right away.
      *
-     * @param findPersonCommandArgs full command args string for the find persons command
-     * @return set of keywords as specified by args
+     * @param changeCount number of changes made
      */
-    private static Set<String> extractKeywordsFromFindPersonArgs(String findPersonCommandArgs) {
-        return new HashSet<>(splitByWhitespace(findPersonCommandArgs.trim()));
+    private static void markChangesUnsaved(int changeCount) {
+        synchronized (MODEL_LOCK) {
+            final boolean wasSaved = unsavedChangeCount == 0;
+            unsavedChangeCount += changeCount;
+            if (wasSaved || unsavedChangeCount >= asyncFlushThreshold) {
+                MODEL_LOCK.notifyAll();
+            }
+        }
     }
 
     /**
-     * Retrieves all persons in the full model whose names contain some of the specified keywords.
-     *
-     * @param keywords for searching
-     * @return list of persons in full model with name containing some of the keywords
+     * Body of the background writer thread. Each time changes are made, waits until the flush interval has
+     * passed since the first of them or until enough changes have been made, then saves all of them with
+     * a single write. Saves any remaining changes before stopping.
      */
-    private static ArrayList<HashMap<PersonProperty, String>> getPersonsWithNameContainingAnyKeyword(Collection<String> keywords) {
-        final ArrayList<HashMap<PersonProperty, String>> matchedPersons = new ArrayList<>();
+    private static void runAsyncPersistence() {
+        while (true) {
+            final int changesToSave;
+            synchronized (MODEL_LOCK) {
+                waitForChangesToFlush();
+                if (unsavedChangeCount == 0) {
+                    isAsyncPersistenceStopped = true;
+                    MODEL_LOCK.notifyAll();
+                    return;
+                }
+                changesToSave = unsavedChangeCount;
+                unsavedChangeCount = 0;
+            }
 
-        for (HashMap<PersonProperty, String> person : getAllPersonsInAddressBook()) {
-            final Set<String> wordsInName = new HashSet<>(splitByWhitespace(getNameFromPerson(person)));
-            if (!Collections.disjoint(wordsInName, keywords)) {
-                matchedPersons.add(person);
+            if (!trySavePersonsToFile(getPersonsInSnapshot(publishedPersonSlots), storageFilePath)) {
+                showToUser(String.format(MESSAGE_ERROR_WRITING_TO_FILE, storageFilePath));
+                synchronized (MODEL_LOCK) {
+                    if (!isAsyncPersistenceStopping) {
+                        unsavedChangeCount += changesToSave; // try again with the next save
+                    }
+                }
             }
         }
-        return matchedPersons;
     }
 
     /**
-     * Updates person identified using last displayed index.
-     *
-     * @param commandArgs full command args string from the user
-     * @return feedback display message for the operation result
+     * Waits until there are changes to save and either the flush interval has passed or the flush threshold
+     * has been reached, or until the writer is asked to stop. Must be called while holding MODEL_LOCK.
      */
-    private static String executeUpdatePerson(String commandArgs) {
-        if (!isUpdatePersonArgsValid(commandArgs)) {
-            return getMessageForInvalidCommandInput(COMMAND_UPDATE_WORD, getUsageInfoForUpdateCommand());
-        }
+    private static void waitForChangesToFlush() {
+        try {
+            while (unsavedChangeCount == 0 && !isAsyncPersistenceStopping) {
+                MODEL_LOCK.wait();
+            }
 
-        final int targetVisibleIndex = extractTargetIndexFromUpdatePersonArgs(commandArgs);
-        if (!isDisplayIndexValidForLastPersonListingView(targetVisibleIndex)) {
-            return MESSAGE_INVALID_PERSON_DISPLAYED_INDEX;
+            final long flushTime = System.currentTimeMillis() + asyncFlushInterval;
+            long timeToFlush = asyncFlushInterval;
+            while (!isAsyncPersistenceStopping && unsavedChangeCount < asyncFlushThreshold && timeToFlush > 0) {
+                MODEL_LOCK.wait(timeToFlush);
+                timeToFlush = flushTime - System.currentTimeMillis();
+            }
+        } catch (InterruptedException ie) {
+            isAsyncPersistenceStopping = true; // save what is left, then stop
         }
-
-        // Gets the person model after being updated (if exists).
-        final Optional<HashMap<PersonProperty, String>> updatedPerson = updatePersonFromAddressBook(commandArgs);
-        // Returns the feedback string according to whether the person model is present.
-        return updatedPerson.isPresent() ? getMessageForSuccessfulUpdate(updatedPerson.get()) // success
-                                    : MESSAGE_PERSON_NOT_IN_ADDRESSBOOK; // not found
     }
 
     /**
-     * Checks validity of update person argument string's format.
-     *
-     * @param rawArgs raw command args string for the update person command
-     * @return whether the input args string is valid
+     * Asks the background writer to save all remaining changes and stop, and waits for it to finish.
+     * Does nothing if asynchronous persistence is not running.
      */
-    private static boolean isUpdatePersonArgsValid(String rawArgs) {
-        /* Notice: Here we do not check whether the data input exists or is valid. It is okay for users to
-          to not change anything. Only the person index is checked. */
-        return isUpdatePersonArgsIndexValid(rawArgs);
+    private static void stopAsyncPersistence() {
+        if (asyncPersistenceThread == null || isAsyncPersistenceStopped) {
+            return;
+        }
+
+        synchronized (MODEL_LOCK) {
+            isAsyncPersistenceStopping = true;
+            MODEL_LOCK.notifyAll();
+            try {
+                while (!isAsyncPersistenceStopped) {
+                    MODEL_LOCK.wait();
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
+    /*
+     * NOTE : =============================================================
+     * In memory-mapped storage mode, record i of the storage file holds
+     * the person in slot i of the model. That is why the slots are only
+     * compacted together with the records (see the compaction method).
+     * Since every record is a line, the storage file can still be read
+     * as a plain text file; empty records are blank lines.
+     * ====================================================================
+     */
+
     /**
-     * Checks existence and correctness of person (last displayed) index in the update argument string's format.
-     *
-     * @param rawArgs raw command args string for the update person command
-     * @return whether the input args string has a legal person index
+     * Maps the storage file into memory and loads the person in each of its records into the same slot of
+     * the model. A storage file that is still in the plain text format is converted into records first.
+     * Shows error messages and exits program if unable to read the file or if it has invalid content.
      */
-    private static boolean isUpdatePersonArgsIndexValid(String rawArgs) {
-        // index is the leading substring up to the first data prefix symbol
-        int indexOfFirstPrefix = getFirstPrefixIndex(rawArgs);
-        // Checks whether the string before the first data index is just whitespace.
-        String strBeforeFirstPrefix = rawArgs.substring(0, indexOfFirstPrefix).trim();
-        if (strBeforeFirstPrefix.length() == 0) {
-            return false;
+    private static void loadDataFromMappedStorage() {
+        try {
+            mapStorageFile();
+        } catch (IOException | IllegalArgumentException e) {
+            showToUser(String.format(MESSAGE_ERROR_READING_FROM_FILE, storageFilePath));
+            exitProgram();
         }
 
-        // Checks whether the leading string represents a valid index number.
-        try {
-            final int extractedIndex = Integer.parseInt(strBeforeFirstPrefix.trim()); // use standard libraries to parse
-            return extractedIndex >= DISPLAYED_INDEX_OFFSET;
-        } catch (NumberFormatException nfe) {
-            return false;
+        final int recordSize = getMappedStorageRecordSize();
+        if (recordSize < 0) {
+            initialiseAddressBookModel(loadPersonsFromFile(storageFilePath));
+            if (!tryRewriteMappedStorageFile()) {
+                showToUser(String.format(MESSAGE_ERROR_WRITING_TO_FILE, storageFilePath));
+                exitProgram();
+            }
+            return;
+        }
+
+        mappedRecordSize = recordSize;
+        final int recordCount = mappedStorage.capacity() / mappedRecordSize;
+        final ArrayList<String[]> loadedSlots = new ArrayList<>(recordCount);
+        for (int slot = 0; slot < recordCount; slot++) {
+            final String record = readMappedStorageRecord(slot);
+            if (record.isEmpty()) {
+                loadedSlots.add(null);
+                continue;
+            }
+
+            final Optional<String[]> person = decodePersonFromString(record);
+            if (!person.isPresent()) {
+                showToUser(String.format(MESSAGE_INVALID_STORAGE_FILE_CONTENT, slot + 1));
+                exitProgram();
+            }
+            loadedSlots.add(person.get());
+            if (slot % STORAGE_LOAD_CHUNK_SIZE == 0) {
+                decodedPersonCount = slot;
+            }
+        }
+
+        // the empty records at the end are room for persons yet to be added, not slots of deleted persons
+        int slotCount = loadedSlots.size();
+        while (slotCount > 0 && loadedSlots.get(slotCount - 1) == null) {
+            slotCount--;
+        }
+
+        clearModel();
+        for (String[] person : loadedSlots.subList(0, slotCount)) {
+            placePersonInModel(person, nextPersonId++);
         }
     }
 
     /**
-     * Extracts the target's index from the raw update person args string
-     *
-     * @param rawArgs raw command args string for the update person command
-     * @return extracted index
+     * Opens the storage file and maps all of it into memory, replacing any earlier mapping.
      */
-    private static int extractTargetIndexFromUpdatePersonArgs(String rawArgs) {
-        // index is the leading substring up to the first data prefix symbol
-        int indexOfFirstPrefix = getFirstPrefixIndex(rawArgs);
-        String strBeforeFirstPrefix = rawArgs.substring(0, indexOfFirstPrefix).trim();
-
-        return Integer.parseInt(strBeforeFirstPrefix.trim());
+    private static void mapStorageFile() throws IOException {
+        mappedStorageChannel = FileChannel.open(Paths.get(storageFilePath),
+                                                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mappedStorage = mappedStorageChannel.map(FileChannel.MapMode.READ_WRITE, 0, mappedStorageChannel.size());
     }
 
     /**
-     * Finds the index where the first data prefix occurs in the string argument.
+     * Returns the size of the records in the mapped storage file, i.e. the length of its first line.
+     * The initial record size is returned for an empty file.
      *
-     * @param args the raw string argument input
-     * @return the index of the first data prefix (0 if there is no prefix)
+     * @return -1 if the lines in the file are not all of the same length (i.e. it is in the plain text format)
      */
-    private static int getFirstPrefixIndex(String args) {
-        final int indexOfPhonePrefix = args.indexOf(PERSON_DATA_PREFIX_PHONE);
-        final int indexOfEmailPrefix = args.indexOf(PERSON_DATA_PREFIX_EMAIL);
+    private static int getMappedStorageRecordSize() {
+        final int fileSize = mappedStorage.capacity();
+        if (fileSize == 0) {
+            return MAPPED_STORAGE_INITIAL_RECORD_SIZE;
+        }
 
-        if (indexOfPhonePrefix < 0 && indexOfEmailPrefix < 0) {
-            return 0;
-        } else if (indexOfPhonePrefix < 0) {
-            return indexOfEmailPrefix;
-        } else if (indexOfEmailPrefix < 0) {
-            return indexOfPhonePrefix;
-        } else {
-            return Math.min(indexOfEmailPrefix, indexOfPhonePrefix);
+        int recordSize = -1;
+        int lineCount = 0;
+        for (int i = 0; i < fileSize; i++) {
+            if (mappedStorage.get(i) != MAPPED_RECORD_END) {
+                continue;
+            }
+            if (recordSize < 0) {
+                recordSize = i + 1;
+            }
+            if ((i + 1) % recordSize != 0) {
+                return -1;
+            }
+            lineCount++;
         }
+        return recordSize > 0 && lineCount * recordSize == fileSize ? recordSize : -1;
     }
 
     /**
-     * Constructs a feedback message for a successful delete person command execution.
+     * Reads the record of the given slot from the mapped storage file.
      *
-     * @see #executeUpdatePerson(String)
-     * @param updatedPerson that person's information after being updated
-     * @return successful update person feedback message
+     * @return the record without its padding; empty if the slot is empty
      */
-    private static String getMessageForSuccessfulUpdate(HashMap<PersonProperty, String> updatedPerson) {
-        return String.format(MESSAGE_UPDATE_PERSON_SUCCESS, getMessageForFormattedPersonData(updatedPerson));
+    private static String readMappedStorageRecord(int slot) {
+        final byte[] record = new byte[mappedRecordSize - 1];
+        mappedStorage.position(slot * mappedRecordSize);
+        mappedStorage.get(record);
+        return new String(record, StandardCharsets.UTF_8).trim();
     }
 
     /**
-     * Deletes person identified using last displayed index.
+     * Overwrites the records of the given slots in the mapped storage file with the persons now in the slots.
+     * If any of the persons does not fit in a record, the whole file is rewritten with larger records instead.
+     * The file is grown first if needed, so that no record is written unless all of them can be.
      *
-     * @param commandArgs full command args string from the user
-     * @return feedback display message for the operation result
+     * @param slots slots whose records are to be written
+     * @return true if the records were written, false if there was an error writing to the file
      */
-    private static String executeDeletePerson(String commandArgs) {
-        if (!isDeletePersonArgsValid(commandArgs)) {
-            return getMessageForInvalidCommandInput(COMMAND_DELETE_WORD, getUsageInfoForDeleteCommand());
+    private static boolean tryWritePersonSlotsToMappedStorageFile(List<Integer> slots) {
+        final long startNanos = System.nanoTime();
+        final ArrayList<byte[]> records = new ArrayList<>(slots.size());
+        int longestRecordLength = 0;
+        int lastSlot = -1;
+        for (int slot : slots) {
+            final byte[] record = encodeMappedStorageRecord(PERSON_SLOTS.get(slot));
+            records.add(record);
+            longestRecordLength = Math.max(longestRecordLength, record.length);
+            lastSlot = Math.max(lastSlot, slot);
         }
 
-        final int targetVisibleIndex = extractTargetIndexFromDeletePersonArgs(commandArgs);
-        if (!isDisplayIndexValidForLastPersonListingView(targetVisibleIndex)) {
-            return MESSAGE_INVALID_PERSON_DISPLAYED_INDEX;
+        if (longestRecordLength >= mappedRecordSize) {
+            return tryRewriteMappedStorageFile();
+        }
+        if (!tryGrowMappedStorageFile(lastSlot + 1)) {
+            return false;
         }
 
-        final HashMap<PersonProperty, String> targetInModel = getPersonByLastVisibleIndex(targetVisibleIndex);
-        return deletePersonFromAddressBook(targetInModel) ? getMessageForSuccessfulDelete(targetInModel) // success
-                                                          : MESSAGE_PERSON_NOT_IN_ADDRESSBOOK; // not found
+        for (int i = 0; i < slots.size(); i++) {
+            putMappedStorageRecord(slots.get(i), records.get(i));
+        }
+        if (durability == Durability.COMMIT) {
+            mappedStorage.force();
+        } else if (durability == Durability.PERIODIC) {
+            isMappedStorageSyncPending = true;
+        }
+        recordStorageOperation(StorageOperation.MAPPED_WRITE, startNanos, (long) slots.size() * mappedRecordSize);
+        return true;
     }
 
     /**
-     * Checks validity of delete person argument string's format.
+     * Makes room for at least the given number of records in the mapped storage file,
+     * doubling its number of records if it is too small. New records are empty.
      *
-     * @param rawArgs raw command args string for the delete person command
-     * @return whether the input args string is valid
+     * @return true if there is enough room, false if the file could not be grown
      */
-    private static boolean isDeletePersonArgsValid(String rawArgs) {
+    private static boolean tryGrowMappedStorageFile(int requiredRecordCount) {
+        final int recordCount = mappedStorage.capacity() / mappedRecordSize;
+        if (requiredRecordCount <= recordCount) {
+            return true;
+        }
+
+        final long newRecordCount = Math.max(requiredRecordCount,
+                                             Math.max(2L * recordCount, MAPPED_STORAGE_INITIAL_RECORD_COUNT));
+        final long newFileSize = Math.min(newRecordCount * mappedRecordSize,
+                                          Integer.MAX_VALUE / mappedRecordSize * mappedRecordSize);
+        if (newFileSize < (long) requiredRecordCount * mappedRecordSize) {
+            return false; // a mapping cannot be larger than 2GB
+        }
+
         try {
-            final int extractedIndex = Integer.parseInt(rawArgs.trim()); // use standard libraries to parse
-            return extractedIndex >= DISPLAYED_INDEX_OFFSET;
-        } catch (NumberFormatException nfe) {
+            mappedStorage = mappedStorageChannel.map(FileChannel.MapMode.READ_WRITE, 0, newFileSize);
+        } catch (IOException ioe) {
             return false;
         }
+        for (int slot = recordCount; slot < newFileSize / mappedRecordSize; slot++) {
+            putMappedStorageRecord(slot, new byte[0]);
+        }
+        return true;
     }
 
     /**
-     * Extracts the target's index from the raw delete person args string
+     * Rewrites the whole mapped storage file from the person slots, with records just large enough for the
+     * longest person, and maps the new file. The new file is written to a temporary file first, which then
+     * replaces the storage file, so the storage file is never left half-written.
      *
-     * @param rawArgs raw command args string for the delete person command
-     * @return extracted index
+     * @return true if the file was rewritten, false if there was an error writing to the file
      */
-    private static int extractTargetIndexFromDeletePersonArgs(String rawArgs) {
-        return Integer.parseInt(rawArgs.trim());
+    private static boolean tryRewriteMappedStorageFile() {
+        final long startNanos = System.nanoTime();
+        final ArrayList<byte[]> records = new ArrayList<>(PERSON_SLOTS.size());
+        int recordSize = mappedRecordSize;
+        for (String[] person : PERSON_SLOTS) {
+            final byte[] record = encodeMappedStorageRecord(person);
+            records.add(record);
+            while (record.length >= recordSize) {
+                recordSize *= 2;
+            }
+        }
+
+        final Path rewriteFile = Paths.get(storageFilePath + COMPACTION_FILE_SUFFIX);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(rewriteFile))) {
+            for (byte[] record : records) {
+                out.write(record);
+                for (int i = record.length; i < recordSize - 1; i++) {
+                    out.write(MAPPED_RECORD_PADDING);
+                }
+                out.write(MAPPED_RECORD_END);
+            }
+        } catch (IOException ioe) {
+            return false;
+        }
+
+        try {
+            mappedStorageChannel.close();
+            replaceFileAtomically(rewriteFile, Paths.get(storageFilePath));
+            mapStorageFile();
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        }
+        mappedRecordSize = recordSize;
+        recordStorageOperation(StorageOperation.MAPPED_REWRITE, startNanos, (long) records.size() * recordSize);
+        return true;
     }
 
     /**
-     * Checks that the given index is within bounds and valid for the last shown person list view.
-     *
-     * @param index to check
-     * @return whether it is valid
+     * Writes a record into the given slot of the mapped storage file, padded up to the end of the slot.
      */
-    private static boolean isDisplayIndexValidForLastPersonListingView(int index) {
-        return index >= DISPLAYED_INDEX_OFFSET && index < latestPersonListingView.size() + DISPLAYED_INDEX_OFFSET;
+    private static void putMappedStorageRecord(int slot, byte[] record) {
+        mappedStorage.position(slot * mappedRecordSize);
+        mappedStorage.put(record);
+        for (int i = record.length; i < mappedRecordSize - 1; i++) {
+            mappedStorage.put(MAPPED_RECORD_PADDING);
+        }
+        mappedStorage.put(MAPPED_RECORD_END);
     }
 
     /**
-     * Constructs a feedback message for a successful delete person command execution.
+     * Encodes the person in a slot into a record of the mapped storage file, without padding.
      *
-     * @see #executeDeletePerson(String)
-     * @param deletedPerson successfully deleted
-     * @return successful delete person feedback message
+     * @param person in the slot; null if the slot is empty
      */
-    private static String getMessageForSuccessfulDelete(HashMap<PersonProperty, String> deletedPerson) {
-        return String.format(MESSAGE_DELETE_PERSON_SUCCESS, getMessageForFormattedPersonData(deletedPerson));
+    private static byte[] encodeMappedStorageRecord(String[] person) {
+        return person == null ? new byte[0] : encodePersonToString(person).getBytes(StandardCharsets.UTF_8);
     }
 
+
+    /*
+     * ================================================================================
+     *        INTERNAL ADDRESS BOOK DATA METHODS
+     * ================================================================================
+     */
+
     /**
-     * Displays all persons in the address book to the user; in added order.
+     * Adds a person to the address book, unless another person has the same value for a unique property.
+     * Saves changes to storage file.
      *
-     * @return feedback display message for the operation result
+     * @param person to add
+     * @return the unique property the person shares with another person, if the person was not added
      */
-    private static String executeListAllPersonsInAddressBook() {
-        ArrayList<HashMap<PersonProperty, String>> toBeDisplayed = getAllPersonsInAddressBook();
-        showToUser(toBeDisplayed);
-        return getMessageForPersonsDisplayedSummary(toBeDisplayed);
+    private static Optional<PersonProperty> addPersonToAddressBook(String[] person) {
+        final Optional<PersonProperty> duplicatedProperty = getUniquePropertySharedWithOtherPerson(person, NO_PERSON_ID);
+        if (duplicatedProperty.isPresent()) {
+            return duplicatedProperty;
+        }
+
+        appendPersonToModel(person);
+        saveChangesToStorage(JOURNAL_RECORD_ADD, PERSON_SLOTS.size() - 1);
+        return Optional.empty();
     }
 
     /**
-     * Clears all persons in the address book.
+     * Makes the person resulting from updating the given person with the update person command arguments.
      *
-     * @return feedback display message for the operation result
+     * @param person to be updated
+     * @param updateArgs the arguments for updating the person
+     * @return the updated person
      */
-    private static String executeClearAddressBook() {
-        clearAddressBook();
-        return MESSAGE_ADDRESSBOOK_CLEARED;
+    private static String[] makeUpdatedPerson(String[] person, String updateArgs) {
+        final String[] updateFields = splitPersonDataFields(updateArgs).get();
+        final String updatedPhone = updateFields[PersonProperty.PHONE.ordinal()];
+        final String updatedEmail = updateFields[PersonProperty.EMAIL.ordinal()];
+        return makePersonFromData(
+                getNameFromPerson(person),
+                canUpdatePhone(updatedPhone) ? updatedPhone : getPhoneFromPerson(person),
+                canUpdateEmail(updatedEmail) ? updatedEmail : getEmailFromPerson(person)
+        );
     }
 
     /**
-     * Requests to terminate the program.
+     * Replaces the person in the given slot with the updated person, unless another person has the same value
+     * for a unique property. Saves any changes to storage file.
+     *
+     * @param personSlot slot of the person to update (must not be empty)
+     * @param updatedPerson to replace the person with
+     * @return the unique property the updated person shares with another person, if the person was not updated
      */
-    private static void executeExitProgramRequest() {
-        exitProgram();
-    }
+    private static Optional<PersonProperty> updatePersonInAddressBook(int personSlot, String[] updatedPerson) {
+        final Optional<PersonProperty> duplicatedProperty =
+                getUniquePropertySharedWithOtherPerson(updatedPerson, PERSON_IDS_BY_SLOT.get(personSlot));
+        if (duplicatedProperty.isPresent()) {
+            return duplicatedProperty;
+        }
 
-    /*
-     * ===========================================
-     *               UI LOGIC
-     * ===========================================
-     */
+        replacePersonInModel(personSlot, updatedPerson);
+
+        // Save the changes to the storage file.
+        saveChangesToStorage(JOURNAL_RECORD_UPDATE, personSlot);
+        return Optional.empty();
+    }
 
     /**
-     * Prompts for the command and reads the text entered by the user.
-     * Ignores lines with first non-whitespace char equal to {@link #INPUT_COMMENT_MARKER} (considered comments)
+     * Returns the first unique property for which some person other than the given one has the same value as
+     * the given person. Looks each value up in the index of its property.
      *
-     * @return full line entered by the user
+     * @param person to check
+     * @param personId ID of the person, or {@link #NO_PERSON_ID} if the person is not in the address book
+     * @return the unique property shared with another person, if any
      */
-    private static String getUserInput() {
-        System.out.print(LINE_PREFIX + "Enter command: ");
-        String inputLine = SCANNER.nextLine();
-        // silently consume all blank and comment lines
-        while (inputLine.trim().isEmpty() || inputLine.trim().charAt(0) == INPUT_COMMENT_MARKER) {
-            inputLine = SCANNER.nextLine();
+    private static Optional<PersonProperty> getUniquePropertySharedWithOtherPerson(String[] person, int personId) {
+        for (PersonProperty property : UNIQUE_PERSON_PROPERTIES) {
+            final Set<Integer> idsWithValue = getPersonPropertyIndex(property).get(person[property.ordinal()]);
+            if (idsWithValue != null && (idsWithValue.size() > 1 || !idsWithValue.contains(personId))) {
+                return Optional.of(property);
+            }
         }
-        return inputLine;
+        return Optional.empty();
     }
 
-   /*
-    * NOTE : =============================================================
-    * Note how the method below uses Java 'Varargs' feature so that the
-    * method can accept a varying number of message parameters.
-    * ====================================================================
-    */
+    /**
+     * Checks whether one's phone information can be updated.
+     *
+     * @param phone the phone given in the update command args (null if not given)
+     * @return true if the phone is provided and is valid
+     */
+    private static boolean canUpdatePhone(String phone) {
+        return phone != null && isPersonPhoneValid(phone);
+    }
 
     /**
-     * Shows a message to the user
+     * Checks whether one's email information can be updated.
      *
-     * Notice: Java new feature VarArgs is being used here.
+     * @param email the email given in the update command args (null if not given)
+     * @return true if the email is provided and is valid
      */
-    private static void showToUser(String... message) {
-        for (String m : message) {
-            System.out.println(LINE_PREFIX + m);
-        }
+    private static boolean canUpdateEmail(String email) {
+        return email != null && isPersonEmailValid(email);
     }
 
     /**
-     * Shows the list of persons to the user.
-     * The list will be indexed, starting from 1.
+     * Deletes the person in the given slot from the addressbook. Saves changes to storage file.
      *
+     * @param personSlot slot of the person to delete (must not be empty)
+     * @return the deleted person
      */
-    private static void showToUser(ArrayList<HashMap<PersonProperty, String>> persons) {
-        String listAsString = getDisplayString(persons);
-        showToUser(listAsString);
-        updateLatestViewedPersonListing(persons);
+    private static String[] deletePersonFromAddressBook(int personSlot) {
+        final String[] deletedPerson = removePersonFromModel(personSlot);
+        saveChangesToStorage(JOURNAL_RECORD_DELETE, personSlot);
+        if (!isBatchStarted) {
+            compactPersonSlotsIfMostlyEmpty();
+        }
+        return deletedPerson;
     }
 
     /**
-     * Returns the display string representation of the list of persons.
+     * Returns all persons in the address book, in added order
      */
-    private static String getDisplayString(ArrayList<HashMap<PersonProperty, String>> persons) {
-        final StringBuilder messageAccumulator = new StringBuilder();
-
-        for (int i = 0; i < persons.size(); i++) {
-            final HashMap<PersonProperty, String> person = persons.get(i);
-            final int displayIndex = i + DISPLAYED_INDEX_OFFSET;
-            messageAccumulator.append('\t')
-                              .append(getIndexedPersonListElementMessage(displayIndex, person))
-                              .append(LS);
+    private static ArrayList<String[]> getAllPersonsInAddressBook() {
+        if (personCount == PERSON_SLOTS.size()) {
+            return PERSON_SLOTS;
         }
 
-        return messageAccumulator.toString();
+        final ArrayList<String[]> persons = new ArrayList<>(personCount);
+        for (String[] person : PERSON_SLOTS) {
+            if (person != null) {
+                persons.add(person);
+            }
+        }
+        return persons;
     }
 
     /**
-     * Constructs a prettified listing element message to represent a person and their data.
+     * Retrieves the persons with the given IDs, who must all be in the address book.
      *
-     * @param visibleIndex visible index for this listing
-     * @param person to show
-     * @return formatted listing message with index
+     * @param personIds IDs of the persons to retrieve
+     * @return the persons, in the same order as their IDs
      */
-    private static String getIndexedPersonListElementMessage(int visibleIndex, HashMap<PersonProperty, String> person) {
-        return String.format(MESSAGE_DISPLAY_LIST_ELEMENT_INDEX, visibleIndex) + getMessageForFormattedPersonData(person);
+    private static ArrayList<String[]> getPersonsByIds(List<Integer> personIds) {
+        final ArrayList<String[]> persons = new ArrayList<>(personIds.size());
+        for (int personId : personIds) {
+            persons.add(PERSON_SLOTS.get(PERSON_SLOTS_BY_ID.get(personId)));
+        }
+        return persons;
     }
 
     /**
-     * Constructs a prettified string to show the user a person's data.
-     *
-     * @param person to show
-     * @return formatted message showing internal state
+     * Clears all persons in the address book and saves changes to file.
      */
-    private static String getMessageForFormattedPersonData(HashMap<PersonProperty, String> person) {
-        return String.format(MESSAGE_DISPLAY_PERSON_DATA,
-                getNameFromPerson(person), getPhoneFromPerson(person), getEmailFromPerson(person));
+    private static void clearAddressBook() {
+        clearModel();
+        saveChangesToStorage(JOURNAL_RECORD_CLEAR, -1);
     }
 
     /**
-     * Updates the latest person listing view the user has seen.
+     * Resets the internal model with the given data. Does not save to file.
      *
-     * @param newListing the new listing of persons
+     * @param persons list of persons to initialise the model with
      */
-    private static void updateLatestViewedPersonListing(ArrayList<HashMap<PersonProperty, String>> newListing) {
-        // clone to insulate from future changes to arg list
-        latestPersonListingView = new ArrayList<>(newListing);
+    private static void initialiseAddressBookModel(ArrayList<String[]> persons) {
+        clearModel();
+        for (String[] person : persons) {
+            appendPersonToModel(person);
+        }
     }
 
     /**
-     * Retrieves the person identified by the displayed index from the last shown listing of persons.
+     * Resets the internal model to the given slots, with the persons keeping the given IDs. Does not save to file.
      *
-     * @param lastVisibleIndex displayed index from last shown person listing
-     * @return the actual person object in the last shown person listing
+     * @param slots persons in each slot (null for an empty slot)
+     * @param personIds ID of the person in each slot
+     */
+    private static void restorePersonSlotsInModel(ArrayList<String[]> slots, ArrayList<Integer> personIds) {
+        clearModel();
+        for (int slot = 0; slot < slots.size(); slot++) {
+            placePersonInModel(slots.get(slot), personIds.get(slot));
+        }
+    }
+
+    /*
+     * NOTE : =============================================================
+     * The methods below are the only ones that add or remove persons from
+     * the person slots, so that the indexes over the slots never go out
+     * of sync with them. They do not save any changes to file.
+     * ====================================================================
+     */
+
+    /**
+     * Appends a person with a new ID to the end of the model and indexes it. Does not save to file.
      */
-    private static HashMap<PersonProperty, String> getPersonByLastVisibleIndex(int lastVisibleIndex) {
-       return latestPersonListingView.get(getRealIndexByLastVisibleIndex(lastVisibleIndex));
+    private static void appendPersonToModel(String[] person) {
+        placePersonInModel(person, nextPersonId++);
     }
 
     /**
-     * Converts from the last visible index to that person's actual index.
+     * Puts a person with the given ID in a new slot at the end of the model and indexes it. Does not save to file.
      *
-     * @param lastVisibleIndex displayed index from last shown person listing
-     * @return the actual index stored in ALL_PERSONS.
+     * @param person to put in the slot (null to leave the slot empty)
+     * @param personId ID of the person
      */
-    private static int getRealIndexByLastVisibleIndex(int lastVisibleIndex) {
-        return lastVisibleIndex - DISPLAYED_INDEX_OFFSET;
+    private static void placePersonInModel(String[] person, int personId) {
+        PERSON_SLOTS.add(person);
+        PERSON_IDS_BY_SLOT.add(personId);
+        markPersonSlotsChanged(PERSON_SLOTS.size() - 1, PERSON_SLOTS.size());
+        if (person != null) {
+            PERSON_SLOTS_BY_ID.put(personId, PERSON_SLOTS.size() - 1);
+            addPersonToIndexes(person, personId);
+            personCount++;
+        }
     }
 
-
-    /*
-     * ===========================================
-     *             STORAGE LOGIC
-     * ===========================================
+    /**
+     * Replaces the person in the given slot of the model with another person, who takes over
+     * the original person's ID and place in the added order. Does not save to file.
+     *
+     * @param personSlot slot of the person (must not be empty)
+     * @param replacement person to be placed in that slot
      */
+    private static void replacePersonInModel(int personSlot, String[] replacement) {
+        final String[] original = PERSON_SLOTS.set(personSlot, replacement);
+        final int personId = PERSON_IDS_BY_SLOT.get(personSlot);
+        markPersonSlotsChanged(personSlot, personSlot + 1);
+        removePersonFromIndexes(original, personId);
+        addPersonToIndexes(replacement, personId);
+    }
 
     /**
-     * Creates storage file if it does not exist. Shows feedback to user.
+     * Removes the person in the given slot of the model and from the indexes, leaving the slot empty.
+     * Does not save to file.
      *
-     * @param filePath file to create if not present
+     * @param personSlot slot of the person (must not be empty)
+     * @return the removed person
      */
-    private static void createFileIfMissing(String filePath) {
-        final File storageFile = new File(filePath);
-        if (storageFile.exists()) {
+    private static String[] removePersonFromModel(int personSlot) {
+        final String[] person = PERSON_SLOTS.set(personSlot, null);
+        final int personId = PERSON_IDS_BY_SLOT.get(personSlot);
+        markPersonSlotsChanged(personSlot, personSlot + 1);
+        PERSON_SLOTS_BY_ID.remove(personId);
+        removePersonFromIndexes(person, personId);
+        personCount--;
+        return person;
+    }
+
+    /**
+     * Compacts the person slots if more of them are empty than not.
+     * In journaled storage mode, the journal is compacted with them.
+     * In memory-mapped storage mode, the records of the storage file are compacted with them.
+     */
+    private static void compactPersonSlotsIfMostlyEmpty() {
+        if (PERSON_SLOTS.size() - personCount <= personCount) {
             return;
         }
 
-        showToUser(String.format(MESSAGE_ERROR_MISSING_STORAGE_FILE, filePath));
+        if (isJournalEnabled) {
+            compactJournal();
+            return;
+        }
 
-        try {
-            storageFile.createNewFile();
-            showToUser(String.format(MESSAGE_STORAGE_FILE_CREATED, filePath));
-        } catch (IOException ioe) {
-            showToUser(String.format(MESSAGE_ERROR_CREATING_STORAGE_FILE, filePath));
+        compactPersonSlots();
+        if (isMappedStorageEnabled && !tryRewriteMappedStorageFile()) {
+            showToUser(String.format(MESSAGE_ERROR_WRITING_TO_FILE, storageFilePath));
             exitProgram();
         }
     }
 
     /**
-     * Converts contents of a file into a list of persons.
-     * Shows error messages and exits program if any errors in reading or decoding was encountered.
-     *
-     * @param filePath file to load from
-     * @return the list of decoded persons, in the format of an ArrayList of HashMap
+     * Moves all persons to the front of the slots, keeping their order, and drops the empty slots.
+     * Does not save to file.
      */
-    private static ArrayList<HashMap<PersonProperty, String>> loadPersonsFromFile(String filePath) {
-        final Optional<ArrayList<HashMap<PersonProperty, String>>> successfullyDecoded = decodePersonsFromStrings(getLinesInFile(filePath));
-
-        if (!successfullyDecoded.isPresent()) {
-            showToUser(MESSAGE_INVALID_STORAGE_FILE_CONTENT);
-            exitProgram();
+    private static void compactPersonSlots() {
+        markPersonSlotsChanged(0, PERSON_SLOTS.size());
+        int nextFreeSlot = 0;
+        for (int slot = 0; slot < PERSON_SLOTS.size(); slot++) {
+            final String[] person = PERSON_SLOTS.get(slot);
+            if (person == null) {
+                continue;
+            }
+            final int personId = PERSON_IDS_BY_SLOT.get(slot);
+            PERSON_SLOTS.set(nextFreeSlot, person);
+            PERSON_IDS_BY_SLOT.set(nextFreeSlot, personId);
+            PERSON_SLOTS_BY_ID.put(personId, nextFreeSlot);
+            nextFreeSlot++;
         }
-
-        return successfullyDecoded.get();
+        PERSON_SLOTS.subList(nextFreeSlot, PERSON_SLOTS.size()).clear();
+        PERSON_IDS_BY_SLOT.subList(nextFreeSlot, PERSON_IDS_BY_SLOT.size()).clear();
     }
 
     /**
-     * Gets all lines in the specified file as a list of strings. Line separators are removed.
-     * Shows error messages and exits program if unable to read from file.
+     * Adds the person's ID to the name word, phone and email indexes.
      */
-    private static ArrayList<String> getLinesInFile(String filePath) {
-        ArrayList<String> lines = null;
-        try {
-            lines = new ArrayList<>(Files.readAllLines(Paths.get(filePath)));
-        } catch (FileNotFoundException fnfe) {
-            showToUser(String.format(MESSAGE_ERROR_MISSING_STORAGE_FILE, filePath));
-            exitProgram();
-        } catch (IOException ioe) {
-            showToUser(String.format(MESSAGE_ERROR_READING_FROM_FILE, filePath));
-            exitProgram();
+    private static void addPersonToIndexes(String[] person, int personId) {
+        addPersonToNameWordIndex(person, personId);
+        addToIndex(PHONE_INDEX, getPhoneFromPerson(person), personId);
+        addToIndex(EMAIL_INDEX, getEmailFromPerson(person), personId);
+        if (UNIQUE_PERSON_PROPERTIES.contains(PersonProperty.NAME)) {
+            addToIndex(NAME_INDEX, getNameFromPerson(person), personId);
         }
-        return lines;
     }
 
     /**
-     * Saves all data to the file. Exits program if there is an error saving to file.
-     *
-     * @param filePath file for saving
+     * Removes the person's ID from the name word, phone and email indexes.
      */
-    private static void savePersonsToFile(ArrayList<HashMap<PersonProperty, String>> persons, String filePath) {
-        final ArrayList<String> linesToWrite = encodePersonsToStrings(persons);
-
-        try {
-            Files.write(Paths.get(storageFilePath), linesToWrite);
-        } catch (IOException ioe) {
-            showToUser(String.format(MESSAGE_ERROR_WRITING_TO_FILE, filePath));
-            exitProgram();
+    private static void removePersonFromIndexes(String[] person, int personId) {
+        removePersonFromNameWordIndex(person, personId);
+        removeFromIndex(PHONE_INDEX, getPhoneFromPerson(person), personId);
+        removeFromIndex(EMAIL_INDEX, getEmailFromPerson(person), personId);
+        if (UNIQUE_PERSON_PROPERTIES.contains(PersonProperty.NAME)) {
+            removeFromIndex(NAME_INDEX, getNameFromPerson(person), personId);
         }
     }
 
+    /**
+     * Returns the index from each value of the person property to the IDs of all persons with that value.
+     */
+    private static HashMap<String, Set<Integer>> getPersonPropertyIndex(PersonProperty property) {
+        switch (property) {
+        case NAME:
+            return NAME_INDEX;
+        case PHONE:
+            return PHONE_INDEX;
+        default:
+            return EMAIL_INDEX;
+        }
+    }
 
     /*
-     * ================================================================================
-     *        INTERNAL ADDRESS BOOK DATA METHODS
-     * ================================================================================
+     * NOTE : =============================================================
+     * Most keys in the indexes (phone numbers, emails, most words) have a
+     * single value under them. A single value is kept in an immutable
+     * singleton set, which takes a fraction of the memory of a hash set;
+     * the set is replaced by a hash set when a second value is added.
+     * ====================================================================
      */
 
     /**
-     * Adds a person to the address book. Saves changes to storage file.
+     * Adds the value under the key in the index.
      *
-     * @param person to add
+     * @return true if the key is new to the index
      */
-    private static void addPersonToAddressBook(HashMap<PersonProperty, String> person) {
-        ALL_PERSONS.add(person);
-        savePersonsToFile(getAllPersonsInAddressBook(), storageFilePath);
+    private static <T> boolean addToIndex(Map<String, Set<T>> index, String key, T value) {
+        final Set<T> values = index.get(key);
+        if (values == null) {
+            index.put(key, Collections.singleton(value));
+            return true;
+        }
+        if (values.contains(value)) {
+            return false;
+        }
+        if (values.size() == 1) {
+            final Set<T> moreValues = new HashSet<>(values);
+            moreValues.add(value);
+            index.put(key, moreValues);
+        } else {
+            values.add(value);
+        }
+        return false;
     }
 
     /**
-     * Updates the specified person from the addressbook if it is inside. Saves any changes to storage file.
+     * Removes the value from under the key in the index, dropping the key if no other value is under it.
      *
-     * @param updateArgs the arguments for updating the person
-     * @return the person model if the given person was found and updated in the model
+     * @return true if the key was dropped from the index
      */
-    private static Optional<HashMap<PersonProperty, String>> updatePersonFromAddressBook(String updateArgs) {
-        final int personIndex = getRealIndexByLastVisibleIndex(extractTargetIndexFromUpdatePersonArgs(updateArgs));
-
-        // Checks whether there really exists a person with the given index.
-        try {
-            final HashMap<PersonProperty, String> person = ALL_PERSONS.get(personIndex);
+    private static <T> boolean removeFromIndex(Map<String, Set<T>> index, String key, T value) {
+        final Set<T> values = index.get(key);
+        if (values.size() == 1 && values.contains(value)) {
+            index.remove(key);
+            return true;
+        }
+        values.remove(value);
+        return false;
+    }
 
-            if (canUpdatePhone(updateArgs)) {
-                person.put(PersonProperty.PHONE, extractPhoneFromPersonString(updateArgs));
+    /**
+     * Adds the person's ID under every word in its name to the name word index, once for a word that
+     * appears more than once.
+     * Words new to the index are also added to the n-gram index, if it has been built.
+     */
+    private static void addPersonToNameWordIndex(String[] person, int personId) {
+        for (String wordInName : new HashSet<>(splitByWhitespace(getNameFromPerson(person)))) {
+            if (addToIndex(NAME_WORD_INDEX, wordInName, personId) && isNameWordGramIndexBuilt) {
+                addNameWordToGramIndex(wordInName);
             }
+        }
+    }
 
-            if (canUpdateEmail(updateArgs)) {
-                person.put(PersonProperty.EMAIL, extractEmailFromPersonString(updateArgs));
+    /**
+     * Removes the person's ID from under every word in its name in the name word index (once for a word that
+     * appears more than once), dropping words no longer found in any name
+     * from both the name word index and the n-gram index.
+     */
+    private static void removePersonFromNameWordIndex(String[] person, int personId) {
+        for (String wordInName : new HashSet<>(splitByWhitespace(getNameFromPerson(person)))) {
+            if (removeFromIndex(NAME_WORD_INDEX, wordInName, personId) && isNameWordGramIndexBuilt) {
+                for (String gram : getNameWordGrams(wordInName)) {
+                    removeFromIndex(NAME_WORD_GRAM_INDEX, gram, wordInName);
+                }
             }
-
-            // Save the changes to the storage file.
-            savePersonsToFile(getAllPersonsInAddressBook(), storageFilePath);
-
-            return Optional.of(person);
-        } catch (IndexOutOfBoundsException ioobe) {
-            return Optional.empty();
         }
     }
 
     /**
-     * Checks whether one's phone information can be updated.
-     *
-     * @param args the argument in string format that user enters for update command
-     * @return true if the phone is provided and is valid
+     * Removes all persons from the model and the indexes. Does not save to file.
+     * IDs already given out are not given out again.
      */
-    private static boolean canUpdatePhone(String args) {
-        return args.contains(PERSON_DATA_PREFIX_PHONE) && isPersonPhoneValid(extractPhoneFromPersonString(args));
+    private static void clearModel() {
+        PERSON_SLOTS.clear();
+        PERSON_IDS_BY_SLOT.clear();
+        PERSON_SLOTS_BY_ID.clear();
+        NAME_WORD_INDEX.clear();
+        NAME_WORD_GRAM_INDEX.clear();
+        PHONE_INDEX.clear();
+        EMAIL_INDEX.clear();
+        NAME_INDEX.clear();
+        personCount = 0;
     }
 
     /**
-     * Checks whether one's email information can be updated.
+     * Records that the given range of slots changed, so that the next snapshot of the slots is made with the
+     * chunks holding them copied afresh.
      *
-     * @param args the argument in string format that user enters for update command
-     * @return true if the email is provided and is valid
+     * @param start first changed slot
+     * @param end slot after the last changed slot
      */
-    private static boolean canUpdateEmail(String args) {
-        return args.contains(PERSON_DATA_PREFIX_EMAIL) && isPersonEmailValid(extractEmailFromPersonString(args));
+    private static void markPersonSlotsChanged(int start, int end) {
+        if (end > start) {
+            CHANGED_PERSON_SLOT_CHUNKS.set(start >>> PERSON_SLOT_CHUNK_BITS, ((end - 1) >>> PERSON_SLOT_CHUNK_BITS) + 1);
+        }
     }
 
     /**
-     * Deletes the specified person from the addressbook if it is inside. Saves any changes to storage file.
-     *
-     * @param exactPerson the actual person inside the address book (exactPerson == the person to delete in the full list)
-     * @return true if the given person was found and deleted in the model
+     * Makes a snapshot of the person slots as they are now, sharing the chunks that did not change since
+     * the last published snapshot with it.
      */
-    private static boolean deletePersonFromAddressBook(HashMap<PersonProperty, String> exactPerson) {
-        final boolean changed = ALL_PERSONS.remove(exactPerson);
-        if (changed) {
-            savePersonsToFile(getAllPersonsInAddressBook(), storageFilePath);
+    private static PersonSlotsSnapshot makePersonSlotsSnapshot() {
+        final PersonSlotsSnapshot published = publishedPersonSlots;
+        final int slotCount = PERSON_SLOTS.size();
+        final int chunkCount = (slotCount + PERSON_SLOT_CHUNK_SIZE - 1) >>> PERSON_SLOT_CHUNK_BITS;
+        final String[][][] personChunks = new String[chunkCount][][];
+        final int[][] personIdChunks = new int[chunkCount][];
+        final int[] chunkPersonCounts = new int[chunkCount];
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            final int firstSlot = chunk << PERSON_SLOT_CHUNK_BITS;
+            final int chunkSize = Math.min(PERSON_SLOT_CHUNK_SIZE, slotCount - firstSlot);
+            if (!CHANGED_PERSON_SLOT_CHUNKS.get(chunk) && chunk < published.personChunks.length
+                    && published.personChunks[chunk].length == chunkSize) {
+                personChunks[chunk] = published.personChunks[chunk];
+                personIdChunks[chunk] = published.personIdChunks[chunk];
+                chunkPersonCounts[chunk] = published.chunkPersonCounts[chunk];
+                continue;
+            }
+
+            personChunks[chunk] = new String[chunkSize][];
+            personIdChunks[chunk] = new int[chunkSize];
+            for (int i = 0; i < chunkSize; i++) {
+                personChunks[chunk][i] = PERSON_SLOTS.get(firstSlot + i);
+                personIdChunks[chunk][i] = PERSON_IDS_BY_SLOT.get(firstSlot + i);
+                if (personChunks[chunk][i] != null) {
+                    chunkPersonCounts[chunk]++;
+                }
+            }
         }
-        return changed;
+        return new PersonSlotsSnapshot(personChunks, personIdChunks, chunkPersonCounts, slotCount, nextPersonId);
     }
 
     /**
-     * Returns all persons in the address book
+     * Publishes a snapshot of the person slots as they are now for the commands that only read them, and for
+     * the background writer to save, which is woken up if changes were made since the last one.
      */
-    private static ArrayList<HashMap<PersonProperty, String>> getAllPersonsInAddressBook() {
-        return ALL_PERSONS;
+    private static void publishPersonSlotsSnapshot() {
+        if (!CHANGED_PERSON_SLOT_CHUNKS.isEmpty() || PERSON_SLOTS.size() != publishedPersonSlots.size()) {
+            publishedPersonSlots = makePersonSlotsSnapshot();
+            CHANGED_PERSON_SLOT_CHUNKS.clear();
+        }
+        if (unpublishedChangeCount > 0) {
+            markChangesUnsaved(unpublishedChangeCount);
+            unpublishedChangeCount = 0;
+        }
     }
 
     /**
-     * Clears all persons in the address book and saves changes to file.
+     * Returns the persons in the given snapshot of the person slots, leaving out the empty slots.
      */
-    private static void clearAddressBook() {
-        ALL_PERSONS.clear();
-        savePersonsToFile(getAllPersonsInAddressBook(), storageFilePath);
+    private static ArrayList<String[]> getPersonsInSnapshot(PersonSlotsSnapshot slots) {
+        final ArrayList<String[]> persons = new ArrayList<>(slots.personCount);
+        for (String[] person : slots) {
+            if (person != null) {
+                persons.add(person);
+            }
+        }
+        return persons;
     }
 
     /**
-     * Resets the internal model with the given data. Does not save to file.
-     *
-     * @param persons list of persons to initialise the model with
+     * Returns the snapshot of the person slots that the given user's commands read: the published one, or
+     * a snapshot of the slots as they are now if the user is in the middle of a batch, so that the user
+     * sees the changes made in the batch.
      */
-    private static void initialiseAddressBookModel(ArrayList<HashMap<PersonProperty, String>> persons) {
-        ALL_PERSONS.clear();
-        ALL_PERSONS.addAll(persons);
+    private static PersonSlotsSnapshot getPersonSlotsSnapshot(Session session) {
+        return session.isHoldingBatch ? makePersonSlotsSnapshot() : publishedPersonSlots;
     }
 
 
@@ -1030,8 +4772,8 @@ public class AddressBook {
      *
      * @param person whose name you want
      */
-    private static String getNameFromPerson(HashMap<PersonProperty, String> person) {
-        return person.get(PersonProperty.NAME);
+    private static String getNameFromPerson(String[] person) {
+        return person[PersonProperty.NAME.ordinal()];
     }
 
     /**
@@ -1039,8 +4781,8 @@ public class AddressBook {
      *
      * @param person whose phone number you want
      */
-    private static String getPhoneFromPerson(HashMap<PersonProperty, String> person) {
-        return person.get(PersonProperty.PHONE);
+    private static String getPhoneFromPerson(String[] person) {
+        return person[PersonProperty.PHONE.ordinal()];
     }
 
     /**
@@ -1048,10 +4790,19 @@ public class AddressBook {
      *
      * @param person whose email you want
      */
-    private static String getEmailFromPerson(HashMap<PersonProperty, String> person) {
-        return person.get(PersonProperty.EMAIL);
+    private static String getEmailFromPerson(String[] person) {
+        return person[PersonProperty.EMAIL.ordinal()];
     }
 
+    /*
+     * NOTE : =============================================================
+     * A String[] of 3 elements takes about 30 bytes of memory, whereas a
+     * HashMap of 3 entries takes over 200 bytes (its table, entry objects
+     * and other bookkeeping). This adds up when there are millions of
+     * persons. Once created, the array of a person is never modified.
+     * ====================================================================
+     */
+
     /**
      * Creates a person from the given data.
      *
@@ -1060,38 +4811,23 @@ public class AddressBook {
      * @param email without data prefix
      * @return constructed person
      */
-    private static HashMap<PersonProperty, String> makePersonFromData(String name, String phone, String email) {
-        final HashMap<PersonProperty, String> person = new HashMap<>();
+    private static String[] makePersonFromData(String name, String phone, String email) {
+        final String[] person = new String[PersonProperty.values().length];
 
-        person.put(PersonProperty.NAME, name);
-        person.put(PersonProperty.PHONE, phone);
-        person.put(PersonProperty.EMAIL, email);
+        person[PersonProperty.NAME.ordinal()] = name;
+        person[PersonProperty.PHONE.ordinal()] = phone;
+        person[PersonProperty.EMAIL.ordinal()] = email;
 
         return person;
     }
 
-    /**
-     * Encodes list of persons into list of decodable and readable string representations.
-     *
-     * @param persons to be encoded
-     * @return encoded strings
-     */
-    private static ArrayList<String> encodePersonsToStrings(ArrayList<HashMap<PersonProperty, String>> persons) {
-        final ArrayList<String> encoded = new ArrayList<>();
-
-        for (HashMap<PersonProperty, String> person : persons) {
-            encoded.add(encodePersonToString(person));
-        }
-        return encoded;
-    }
-
     /**
      * Encodes a person into a decodable and readable string representation.
      *
      * @param person to be encoded
      * @return encoded string
      */
-    private static String encodePersonToString(HashMap<PersonProperty, String> person) {
+    private static String encodePersonToString(String[] person) {
         return String.format(PERSON_STRING_REPRESENTATION,
                 getNameFromPerson(person), getPhoneFromPerson(person), getEmailFromPerson(person));
     }
@@ -1104,17 +4840,20 @@ public class AddressBook {
      */
 
     /**
-     * Decodes persons from a list of string representations.
+     * Decodes persons from a list of string representations. Blank strings are skipped.
      *
      * @param encodedPersons strings to be decoded
      * @return if cannot decode any: empty Optional
-     *         else: Optional containing decoded persons (in the format of an ArrayList of HashMap)
+     *         else: Optional containing decoded persons (in the format of an ArrayList of String[])
      */
-    private static Optional<ArrayList<HashMap<PersonProperty, String>>> decodePersonsFromStrings(ArrayList<String> encodedPersons) {
-        final ArrayList<HashMap<PersonProperty, String>> decodedPersons = new ArrayList<>();
+    private static Optional<ArrayList<String[]>> decodePersonsFromStrings(ArrayList<String> encodedPersons) {
+        final ArrayList<String[]> decodedPersons = new ArrayList<>();
 
         for (String encodedPerson : encodedPersons) {
-            final Optional<HashMap<PersonProperty, String>> decodedPerson = decodePersonFromString(encodedPerson);
+            if (isBlank(encodedPerson)) {
+                continue;
+            }
+            final Optional<String[]> decodedPerson = decodePersonFromString(encodedPerson);
             if (!decodedPerson.isPresent()) {
                 return Optional.empty();
             }
@@ -1125,102 +4864,140 @@ public class AddressBook {
     }
 
     /**
-     * Decodes a person from it's supposed string representation.
+     * Decodes a person from a line of a CSV file: the name, phone and email separated by commas.
      *
-     * @param encoded string to be decoded
+     * @param line to be decoded
      * @return if cannot decode: empty Optional
-     *         else: Optional containing decoded person (in HashMap format)
+     *         else: Optional containing decoded person (in String[] format)
      */
-    private static Optional<HashMap<PersonProperty, String>> decodePersonFromString(String encoded) {
-        // check that we can extract the parts of a person from the encoded string
-        if (!isPersonDataExtractableFrom(encoded)) {
+    private static Optional<String[]> decodePersonFromCsvLine(String line) {
+        final String[] fields = line.split(CSV_FIELD_SEPARATOR, PersonProperty.values().length);
+        if (fields.length < PersonProperty.values().length) {
             return Optional.empty();
         }
 
-        final HashMap<PersonProperty, String> decodedPerson = makePersonFromData(
-                extractNameFromPersonString(encoded),
-                extractPhoneFromPersonString(encoded),
-                extractEmailFromPersonString(encoded)
+        final String[] decodedPerson = makePersonFromData(
+                fields[PersonProperty.NAME.ordinal()].trim(),
+                fields[PersonProperty.PHONE.ordinal()].trim(),
+                fields[PersonProperty.EMAIL.ordinal()].trim()
         );
-
-        // check that the constructed person is valid
         return isPersonDataValid(decodedPerson) ? Optional.of(decodedPerson) : Optional.empty();
     }
 
     /**
-     * Returns true if person data (email, name, phone etc) can be extracted from the argument string.
-     * Format is [name] p/[phone] e/[email], phone and email positions can be swapped.
+     * Returns the position of the first string that cannot be decoded into a person, or -1 if all can be decoded.
+     * Blank strings are skipped.
      *
-     * @param personData person string representation
+     * @param encodedPersons strings to be decoded
      */
-    private static boolean isPersonDataExtractableFrom(String personData) {
-        final String matchAnyPersonDataPrefix = PERSON_DATA_PREFIX_PHONE + '|' + PERSON_DATA_PREFIX_EMAIL;
-        final String[] splitArgs = personData.trim().split(matchAnyPersonDataPrefix);
-        return splitArgs.length == 3 // 3 arguments
-                && !splitArgs[0].isEmpty() // non-empty arguments
-                && !splitArgs[1].isEmpty()
-                && !splitArgs[2].isEmpty();
+    private static int getIndexOfFirstUndecodablePerson(ArrayList<String> encodedPersons) {
+        for (int i = 0; i < encodedPersons.size(); i++) {
+            final String encodedPerson = encodedPersons.get(i);
+            if (!isBlank(encodedPerson) && !decodePersonFromString(encodedPerson).isPresent()) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /**
-     * Extracts substring representing person name from person string representation
+     * Decodes a person from it's supposed string representation.
      *
-     * @param encoded person string representation
-     * @return name argument
+     * @param encoded string to be decoded
+     * @return if cannot decode: empty Optional
+     *         else: Optional containing decoded person (in String[] format)
      */
-    private static String extractNameFromPersonString(String encoded) {
-        final int indexOfPhonePrefix = encoded.indexOf(PERSON_DATA_PREFIX_PHONE);
-        final int indexOfEmailPrefix = encoded.indexOf(PERSON_DATA_PREFIX_EMAIL);
+    private static Optional<String[]> decodePersonFromString(String encoded) {
+        final Optional<String[]> fields = splitPersonDataFields(encoded);
+
+        // check that we can extract the parts of a person from the encoded string
+        if (!fields.isPresent() || Arrays.asList(fields.get()).contains(null)) {
+            return Optional.empty();
+        }
 
-        // name is leading substring up to first data prefix symbol
-        int indexOfFirstPrefix = Math.min(indexOfEmailPrefix, indexOfPhonePrefix);
-        return encoded.substring(0, indexOfFirstPrefix).trim();
+        final String[] decodedPerson = makePersonFromData(
+                fields.get()[PersonProperty.NAME.ordinal()],
+                fields.get()[PersonProperty.PHONE.ordinal()],
+                fields.get()[PersonProperty.EMAIL.ordinal()]
+        );
+
+        // check that the constructed person is valid
+        return isPersonDataValid(decodedPerson) ? Optional.of(decodedPerson) : Optional.empty();
     }
 
+    /*
+     * NOTE : =============================================================
+     * Splitting a person string representation is done in a single pass:
+     * the positions of both data prefixes are found first, then each field
+     * is copied out exactly once. This matters when decoding millions of
+     * lines, where repeated searching and copying add up.
+     * ====================================================================
+     */
+
     /**
-     * Extracts substring representing phone number from person string representation
+     * Splits person data into its fields. Format is [leading field] p/[phone] e/[email],
+     * phone and email positions can be swapped.
+     * The leading field is the name for a person string representation, or the index for update args.
      *
-     * @param encoded person string representation
-     * @return phone number argument WITHOUT prefix
+     * @param personData person string representation or update args
+     * @return if any data prefix occurs more than once: empty Optional
+     *         else: Optional containing size 3 array of trimmed fields WITHOUT prefixes, positioned
+     *               by {@link PersonProperty} (the leading field at NAME); null for a missing prefix
      */
-    private static String extractPhoneFromPersonString(String encoded) {
-        final int indexOfPhonePrefix = encoded.indexOf(PERSON_DATA_PREFIX_PHONE);
-        final int indexOfEmailPrefix = encoded.indexOf(PERSON_DATA_PREFIX_EMAIL);
-
-        // phone is last arg, target is from prefix to end of string
-        if (indexOfPhonePrefix > indexOfEmailPrefix) {
-            return removePrefixSign(encoded.substring(indexOfPhonePrefix, encoded.length()).trim(),
-                    PERSON_DATA_PREFIX_PHONE);
+    private static Optional<String[]> splitPersonDataFields(String personData) {
+        int indexOfPhonePrefix = -1;
+        int indexOfEmailPrefix = -1;
+
+        for (int i = 0; i < personData.length(); i++) {
+            if (personData.startsWith(PERSON_DATA_PREFIX_PHONE, i)) {
+                if (indexOfPhonePrefix >= 0) {
+                    return Optional.empty();
+                }
+                indexOfPhonePrefix = i;
+                i += PERSON_DATA_PREFIX_PHONE.length() - 1;
+            } else if (personData.startsWith(PERSON_DATA_PREFIX_EMAIL, i)) {
+                if (indexOfEmailPrefix >= 0) {
+                    return Optional.empty();
+                }
+                indexOfEmailPrefix = i;
+                i += PERSON_DATA_PREFIX_EMAIL.length() - 1;
+            }
+        }
 
-        // phone is middle arg, target is from own prefix to next prefix
-        } else {
-            return removePrefixSign(
-                    encoded.substring(indexOfPhonePrefix, indexOfEmailPrefix).trim(),
-                    PERSON_DATA_PREFIX_PHONE);
+        final String[] fields = new String[PersonProperty.values().length];
+        fields[PersonProperty.NAME.ordinal()] = substringAndTrim(personData, 0,
+                getEndOfField(0, indexOfPhonePrefix, indexOfEmailPrefix, personData.length()));
+        if (indexOfPhonePrefix >= 0) {
+            fields[PersonProperty.PHONE.ordinal()] = substringAndTrim(personData,
+                    indexOfPhonePrefix + PERSON_DATA_PREFIX_PHONE.length(),
+                    getEndOfField(indexOfPhonePrefix, indexOfEmailPrefix, -1, personData.length()));
+        }
+        if (indexOfEmailPrefix >= 0) {
+            fields[PersonProperty.EMAIL.ordinal()] = substringAndTrim(personData,
+                    indexOfEmailPrefix + PERSON_DATA_PREFIX_EMAIL.length(),
+                    getEndOfField(indexOfEmailPrefix, indexOfPhonePrefix, -1, personData.length()));
         }
+        return Optional.of(fields);
     }
 
     /**
-     * Extracts substring representing email from person string representation
+     * Returns where the field starting at the given position ends: at the nearest data prefix after it,
+     * or at the end of the person data if there is none.
      *
-     * @param encoded person string representation
-     * @return email argument WITHOUT prefix
+     * @param fieldStart position where the field (or its prefix) starts
+     * @param firstPrefixIndex position of another data prefix (-1 if absent)
+     * @param secondPrefixIndex position of yet another data prefix (-1 if absent)
+     * @param dataLength length of the whole person data
      */
-    private static String extractEmailFromPersonString(String encoded) {
-        final int indexOfPhonePrefix = encoded.indexOf(PERSON_DATA_PREFIX_PHONE);
-        final int indexOfEmailPrefix = encoded.indexOf(PERSON_DATA_PREFIX_EMAIL);
-
-        // email is last arg, target is from prefix to end of string
-        if (indexOfEmailPrefix > indexOfPhonePrefix) {
-            return removePrefixSign(encoded.substring(indexOfEmailPrefix, encoded.length()).trim(),
-                    PERSON_DATA_PREFIX_EMAIL);
-
-        // email is middle arg, target is from own prefix to next prefix
-        } else {
-            return removePrefixSign(
-                    encoded.substring(indexOfEmailPrefix, indexOfPhonePrefix).trim(),
-                    PERSON_DATA_PREFIX_EMAIL);
+    private static int getEndOfField(int fieldStart, int firstPrefixIndex, int secondPrefixIndex, int dataLength) {
+        int fieldEnd = dataLength;
+        if (firstPrefixIndex >= fieldStart && firstPrefixIndex < fieldEnd) {
+            fieldEnd = firstPrefixIndex;
+        }
+        if (secondPrefixIndex >= fieldStart && secondPrefixIndex < fieldEnd) {
+            fieldEnd = secondPrefixIndex;
         }
+        return fieldEnd;
     }
 
     /**
@@ -1228,10 +5005,10 @@ public class AddressBook {
      *
      * @param person String array representing the person (used in internal data)
      */
-    private static boolean isPersonDataValid(HashMap<PersonProperty, String> person) {
-        return isPersonNameValid(person.get(PersonProperty.NAME))
-                && isPersonPhoneValid(person.get(PersonProperty.PHONE))
-                && isPersonEmailValid(person.get(PersonProperty.EMAIL));
+    private static boolean isPersonDataValid(String[] person) {
+        return isPersonNameValid(getNameFromPerson(person))
+                && isPersonPhoneValid(getPhoneFromPerson(person))
+                && isPersonEmailValid(getEmailFromPerson(person));
     }
 
     /*
@@ -1248,7 +5025,7 @@ public class AddressBook {
      * @param name to be validated
      */
     private static boolean isPersonNameValid(String name) {
-        return name.matches("(\\w|\\s)+");  // name is nonempty mixture of alphabets and whitespace
+        return PERSON_NAME_PATTERN.matcher(name).matches();  // name is nonempty mixture of alphabets and whitespace
         //TODO: implement a more permissive validation
     }
 
@@ -1258,7 +5035,7 @@ public class AddressBook {
      * @param phone to be validated
      */
     private static boolean isPersonPhoneValid(String phone) {
-        return phone.matches("\\d+");    // phone nonempty sequence of digits
+        return PERSON_PHONE_PATTERN.matcher(phone).matches();    // phone nonempty sequence of digits
         //TODO: implement a more permissive validation
     }
 
@@ -1269,11 +5046,113 @@ public class AddressBook {
      * @return whether arg is a valid person email
      */
     private static boolean isPersonEmailValid(String email) {
-        return email.matches("\\S+@\\S+\\.\\S+"); // email is [non-whitespace]@[non-whitespace].[non-whitespace]
+        return PERSON_EMAIL_PATTERN.matcher(email).matches(); // email is [non-whitespace]@[non-whitespace].[non-whitespace]
         //TODO: implement a more permissive validation
     }
 
 
+    /*
+     * ===============================================
+     *                STATISTICS
+     * ===============================================
+     */
+
+    /**
+     * Makes a histogram for the durations of each command that can be executed,
+     * in the order the commands are shown by help.
+     */
+    private static Map<String, LatencyHistogram> makeCommandLatencyHistograms() {
+        final LinkedHashMap<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+        for (String commandWord : Arrays.asList(COMMAND_ADD_WORD, COMMAND_FIND_WORD, COMMAND_LIST_WORD,
+                                                COMMAND_UPDATE_WORD, COMMAND_DELETE_WORD, COMMAND_CLEAR_WORD,
+                                                COMMAND_IMPORT_WORD, COMMAND_EXPORT_WORD, COMMAND_BEGIN_WORD,
+                                                COMMAND_COMMIT_WORD, COMMAND_ROLLBACK_WORD, COMMAND_STATS_WORD,
+                                                COMMAND_HELP_WORD, STATS_OTHER_COMMANDS)) {
+            histograms.put(commandWord, new LatencyHistogram());
+        }
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * Records how long a command with the given command word took.
+     */
+    private static void recordCommandLatency(String commandWord, long nanos) {
+        final LatencyHistogram histogram = COMMAND_LATENCIES.get(commandWord);
+        (histogram != null ? histogram : COMMAND_LATENCIES.get(STATS_OTHER_COMMANDS)).record(nanos);
+    }
+
+    /**
+     * Records a storage operation that started at the given time and has just ended, if statistics are enabled.
+     *
+     * @param startNanos when the operation started, as given by System.nanoTime()
+     * @param bytes number of bytes read or written by the operation
+     */
+    private static void recordStorageOperation(StorageOperation operation, long startNanos, long bytes) {
+        if (isStatsEnabled) {
+            STORAGE_OPERATION_LATENCIES.get(operation).record(System.nanoTime() - startNanos);
+            STORAGE_OPERATION_BYTES.get(operation).add(bytes);
+        }
+    }
+
+    /**
+     * Returns the lines of a report of the statistics recorded since the program started: the number of commands
+     * executed per second, and a table each of the commands and the storage operations carried out at least once.
+     */
+    private static ArrayList<String> getStatsReportLines() {
+        final double secondsSinceStart = (System.nanoTime() - PROGRAM_START_NANOS) / NANOS_PER_SECOND;
+        long commandCount = 0;
+        for (LatencyHistogram histogram : COMMAND_LATENCIES.values()) {
+            commandCount += histogram.getCount();
+        }
+
+        final ArrayList<String> lines = new ArrayList<>();
+        lines.add(String.format(MESSAGE_STATS_OVERVIEW, commandCount, secondsSinceStart,
+                                commandCount / secondsSinceStart));
+        lines.add(getStatsTableHeader("command"));
+        for (Map.Entry<String, LatencyHistogram> command : COMMAND_LATENCIES.entrySet()) {
+            if (command.getValue().getCount() > 0) {
+                lines.add(getStatsTableRow(command.getKey(), command.getValue()));
+            }
+        }
+        lines.add(getStatsTableHeader("storage") + String.format(MESSAGE_STATS_TABLE_SIZE_COLUMN, "bytes"));
+        for (StorageOperation operation : StorageOperation.values()) {
+            final LatencyHistogram histogram = STORAGE_OPERATION_LATENCIES.get(operation);
+            if (histogram.getCount() > 0) {
+                lines.add(getStatsTableRow(operation.name().toLowerCase(), histogram)
+                          + String.format(MESSAGE_STATS_TABLE_SIZE_COLUMN, STORAGE_OPERATION_BYTES.get(operation).sum()));
+            }
+        }
+        return lines;
+    }
+
+    private static String getStatsTableHeader(String title) {
+        return String.format(MESSAGE_STATS_TABLE_HEADER, title, "count", "mean ms", "p50 ms", "p90 ms", "p99 ms",
+                             "p99.9 ms", "max ms");
+    }
+
+    private static String getStatsTableRow(String title, LatencyHistogram histogram) {
+        return String.format(MESSAGE_STATS_TABLE_ROW, title, histogram.getCount(),
+                             histogram.getMeanNanos() / NANOS_PER_MILLI,
+                             histogram.getPercentileNanos(50) / NANOS_PER_MILLI,
+                             histogram.getPercentileNanos(90) / NANOS_PER_MILLI,
+                             histogram.getPercentileNanos(99) / NANOS_PER_MILLI,
+                             histogram.getPercentileNanos(99.9) / NANOS_PER_MILLI,
+                             histogram.getMaxNanos() / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Writes the statistics recorded since the program started to the statistics file.
+     * Run when the program exits, however it exits.
+     */
+    private static void writeStatsToFile() {
+        try {
+            Files.write(Paths.get(statsFilePath), getStatsReportLines(), StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            showToUser(String.format(MESSAGE_STATS_WRITE_FAILED, statsFilePath));
+            OUTPUT.flush();
+        }
+    }
+
     /*
      * ===============================================
      *         COMMAND HELP INFO FOR USERS
@@ -1288,6 +5167,12 @@ public class AddressBook {
                 + getUsageInfoForUpdateCommand() + LS
                 + getUsageInfoForDeleteCommand() + LS
                 + getUsageInfoForClearCommand() + LS
+                + getUsageInfoForImportCommand() + LS
+                + getUsageInfoForExportCommand() + LS
+                + getUsageInfoForBeginCommand() + LS
+                + getUsageInfoForCommitCommand() + LS
+                + getUsageInfoForRollbackCommand() + LS
+                + getUsageInfoForStatsCommand() + LS
                 + getUsageInfoForExitCommand() + LS
                 + getUsageInfoForHelpCommand();
     }
@@ -1309,6 +5194,7 @@ public class AddressBook {
     /** Returns the string for showing 'view' command usage instruction */
     private static String getUsageInfoForListCommand() {
         return String.format(MESSAGE_COMMAND_HELP, COMMAND_LIST_WORD, COMMAND_LIST_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_PARAMETERS, COMMAND_LIST_PARAMETERS) + LS
                 + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_LIST_EXAMPLE) + LS;
     }
 
@@ -1332,6 +5218,44 @@ public class AddressBook {
                 + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_CLEAR_EXAMPLE) + LS;
     }
 
+    /** Returns string for showing 'import' command usage instruction */
+    private static String getUsageInfoForImportCommand() {
+        return String.format(MESSAGE_COMMAND_HELP, COMMAND_IMPORT_WORD, COMMAND_IMPORT_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_PARAMETERS, COMMAND_IMPORT_PARAMETER) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_IMPORT_EXAMPLE) + LS;
+    }
+
+    /** Returns string for showing 'export' command usage instruction */
+    private static String getUsageInfoForExportCommand() {
+        return String.format(MESSAGE_COMMAND_HELP, COMMAND_EXPORT_WORD, COMMAND_EXPORT_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_PARAMETERS, COMMAND_EXPORT_PARAMETER) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_EXPORT_EXAMPLE) + LS;
+    }
+
+    /** Returns string for showing 'begin' command usage instruction */
+    private static String getUsageInfoForBeginCommand() {
+        return String.format(MESSAGE_COMMAND_HELP, COMMAND_BEGIN_WORD, COMMAND_BEGIN_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_BEGIN_EXAMPLE) + LS;
+    }
+
+    /** Returns string for showing 'commit' command usage instruction */
+    private static String getUsageInfoForCommitCommand() {
+        return String.format(MESSAGE_COMMAND_HELP, COMMAND_COMMIT_WORD, COMMAND_COMMIT_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_COMMIT_EXAMPLE) + LS;
+    }
+
+    /** Returns string for showing 'rollback' command usage instruction */
+    private static String getUsageInfoForRollbackCommand() {
+        return String.format(MESSAGE_COMMAND_HELP, COMMAND_ROLLBACK_WORD, COMMAND_ROLLBACK_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_ROLLBACK_EXAMPLE) + LS;
+    }
+
+    /** Returns string for showing 'stats' command usage instruction */
+    private static String getUsageInfoForStatsCommand() {
+        return String.format(MESSAGE_COMMAND_HELP, COMMAND_STATS_WORD, COMMAND_STATS_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_STATS_EXAMPLE) + LS;
+    }
+
     /** Returns the string for showing 'exit' command usage instruction */
     private static String getUsageInfoForExitCommand() {
         return String.format(MESSAGE_COMMAND_HELP, COMMAND_EXIT_WORD, COMMAND_EXIT_DESC)
@@ -1352,14 +5276,36 @@ public class AddressBook {
      */
 
     /**
-     * Removes sign(p/, d/, etc) from parameter string
+     * Returns the part of the source string between the given positions with leading and trailing
+     * whitespace removed, copying the characters only once.
      *
-     * @param s  Parameter as a string
-     * @param sign  Parameter sign to be removed
-     * @return  string without the sign
+     * @param s  source string
+     * @param beginIndex  position of the first character of the part, inclusive
+     * @param endIndex  position of the last character of the part, exclusive
+     * @return  trimmed part of the source string
      */
-    private static String removePrefixSign(String s, String sign) {
-        return s.replace(sign, "");
+    private static String substringAndTrim(String s, int beginIndex, int endIndex) {
+        int begin = beginIndex;
+        int end = endIndex;
+        while (begin < end && s.charAt(begin) <= ' ') {
+            begin++;
+        }
+        while (end > begin && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return s.substring(begin, end);
+    }
+
+    /**
+     * Checks whether a string is empty or contains only whitespace, without creating a trimmed copy.
+     */
+    private static boolean isBlank(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -1369,7 +5315,7 @@ public class AddressBook {
      * @return split by whitespace
      */
     private static ArrayList<String> splitByWhitespace(String toSplit) {
-        return new ArrayList<>(Arrays.asList(toSplit.trim().split("\\s+")));
+        return new ArrayList<>(Arrays.asList(WHITESPACE_PATTERN.split(toSplit.trim())));
     }
 
 }
\ No newline at end of file
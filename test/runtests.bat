@@ -3,6 +3,10 @@
 REM create bin directory if it doesn't exist
 if not exist ..\bin mkdir ..\bin
 
+REM create an empty scratch directory for files written by the tests
+if exist scratch rmdir /s /q scratch
+mkdir scratch
+
 REM compile the code into the bin folder
 javac  ..\src\seedu\addressbook\Addressbook.java -d ..\bin
 
@@ -20,6 +24,61 @@ copy /y NUL data\valid.filename
 java -classpath ..\bin seedu.addressbook.AddressBook "data/valid.filename" < exitinput.txt >> actual.txt
 REM run the program, feed commands from input.txt file and redirect the output to the actual.txt
 java -classpath ..\bin seedu.addressbook.AddressBook < input.txt >> actual.txt
+REM append the JSON and CSV files exported by the run above, to compare them as well
+type scratch\exported.json >> actual.txt
+type scratch\exported.csv >> actual.txt
+REM journaled storage mode, run twice on the same storage file: the first run changes the persons, the second lists them
+java -classpath ..\bin seedu.addressbook.AddressBook --journal scratch/journal.txt < storageinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --journal scratch/journal.txt < listinput.txt >> actual.txt
+REM journaled storage mode: the last record of a journal was cut short while being appended; it is ignored
+echo A Alice Tan p/91234567 e/alice@example.com> scratch\torn.txt.journal
+<nul set /p "=A Bob Lee p/92345678 e/bob@example.c" >> scratch\torn.txt.journal
+type nul > scratch\torn.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --journal scratch/torn.txt < listinput.txt >> actual.txt
+REM memory-mapped storage mode
+java -classpath ..\bin seedu.addressbook.AddressBook --mapped scratch/mapped.txt < storageinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --mapped scratch/mapped.txt < listinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --mapped scratch/mapped.txt < indexinput.txt >> actual.txt
+REM binary storage format, selected by the program option or by the file extension
+java -classpath ..\bin seedu.addressbook.AddressBook --binary scratch/binary.data < storageinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --binary scratch/binary.data < listinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook scratch/binary.bin < storageinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook scratch/binary.bin < listinput.txt >> actual.txt
+REM convert a text storage file into a binary one and back, and list each converted file
+java -classpath ..\bin seedu.addressbook.AddressBook --convert scratch/journal.txt scratch/converted.bin >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook scratch/converted.bin < listinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --convert scratch/converted.bin scratch/converted.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook scratch/converted.txt < listinput.txt >> actual.txt
+REM asynchronous persistence mode
+java -classpath ..\bin seedu.addressbook.AddressBook --async --async-interval=50 scratch/async.txt < storageinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --async --async-interval=50 scratch/async.txt < listinput.txt >> actual.txt
+REM durability levels, also in the other storage modes
+java -classpath ..\bin seedu.addressbook.AddressBook --durability=none scratch/durability-none.txt < storageinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --durability=none scratch/durability-none.txt < listinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --durability=commit scratch/durability-commit.txt < storageinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --durability=commit scratch/durability-commit.txt < listinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --durability=periodic --durability-interval=50 scratch/durability-periodic.txt < storageinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --durability=periodic --durability-interval=50 scratch/durability-periodic.txt < listinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --journal --durability=commit scratch/durability-journal.txt < storageinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --journal --durability=commit scratch/durability-journal.txt < listinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --mapped --durability=commit scratch/durability-mapped.txt < storageinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --mapped --durability=commit scratch/durability-mapped.txt < listinput.txt >> actual.txt
+REM unique person properties
+java -classpath ..\bin seedu.addressbook.AddressBook --unique=phone,email scratch/unique.txt < storageinput.txt >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --unique=phone,email scratch/unique.txt < listinput.txt >> actual.txt
+REM server mode is only tested by runtests.sh, which has a client to connect with
+REM loading the storage file in the background; whether a command has to wait for it depends on timing
+java -classpath ..\bin seedu.addressbook.AddressBook --lazy scratch/lazy.txt < storageinput.txt | findstr /v /c:"Still loading" >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --lazy scratch/lazy.txt < listinput.txt | findstr /v /c:"Still loading" >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --lazy --journal scratch/lazy-journal.txt < storageinput.txt | findstr /v /c:"Still loading" >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --lazy --journal scratch/lazy-journal.txt < listinput.txt | findstr /v /c:"Still loading" >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --lazy --mapped scratch/lazy-mapped.txt < storageinput.txt | findstr /v /c:"Still loading" >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --lazy --mapped scratch/lazy-mapped.txt < listinput.txt | findstr /v /c:"Still loading" >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --lazy --async scratch/lazy-async.txt < storageinput.txt | findstr /v /c:"Still loading" >> actual.txt
+java -classpath ..\bin seedu.addressbook.AddressBook --lazy --async scratch/lazy-async.txt < listinput.txt | findstr /v /c:"Still loading" >> actual.txt
 
 REM compare the output to the expected output
-FC actual.txt expected.txt
\ No newline at end of file
+FC actual.txt expected.txt
+
+REM delete files written by the tests
+rmdir /s /q scratch
\ No newline at end of file
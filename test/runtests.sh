@@ -15,6 +15,10 @@ then
     rm actual.txt
 fi
 
+# create an empty scratch directory for files written by the tests
+rm -rf scratch
+mkdir scratch
+
 # compile the code into the bin folder
 javac  ../src/seedu/addressbook/AddressBook.java -d ../bin
 
@@ -39,10 +43,106 @@ java -classpath ../bin seedu.addressbook.AddressBook 'data/valid.filename' < exi
 touch addressbook.txt
 java -classpath ../bin seedu.addressbook.AddressBook < input.txt >> actual.txt
 
+# append the JSON and CSV files exported by the run above, to compare them as well
+cat scratch/exported.json scratch/exported.csv >> actual.txt
+
+# run the program twice on the same storage file with the given program arguments: the first run
+# changes the persons from storageinput.txt, the second lists the persons the first one saved
+run_twice() {
+    java -classpath ../bin seedu.addressbook.AddressBook "$@" < storageinput.txt >> actual.txt
+    java -classpath ../bin seedu.addressbook.AddressBook "$@" < listinput.txt >> actual.txt
+}
+
+# journaled storage mode
+run_twice --journal scratch/journal.txt
+
+# journaled storage mode: the last record of a journal was cut short while being appended; it is ignored
+# even though what was written of it reads as a valid record
+printf 'A Alice Tan p/91234567 e/alice@example.com\nA Bob Lee p/92345678 e/bob@example.c' > scratch/torn.txt.journal
+touch scratch/torn.txt
+java -classpath ../bin seedu.addressbook.AddressBook --journal scratch/torn.txt < listinput.txt >> actual.txt
+
+# memory-mapped storage mode; a third run edits persons by index, which must skip the record of the
+# person deleted in the first run
+run_twice --mapped scratch/mapped.txt
+java -classpath ../bin seedu.addressbook.AddressBook --mapped scratch/mapped.txt < indexinput.txt >> actual.txt
+
+# binary storage format, selected by the program option or by the file extension
+run_twice --binary scratch/binary.data
+run_twice scratch/binary.bin
+
+# convert a text storage file into a binary one and back, and list each converted file
+java -classpath ../bin seedu.addressbook.AddressBook --convert scratch/journal.txt scratch/converted.bin >> actual.txt
+java -classpath ../bin seedu.addressbook.AddressBook scratch/converted.bin < listinput.txt >> actual.txt
+java -classpath ../bin seedu.addressbook.AddressBook --convert scratch/converted.bin scratch/converted.txt >> actual.txt
+java -classpath ../bin seedu.addressbook.AddressBook scratch/converted.txt < listinput.txt >> actual.txt
+
+# asynchronous persistence mode
+run_twice --async --async-interval=50 scratch/async.txt
+
+# durability levels, also in the other storage modes
+run_twice --durability=none scratch/durability-none.txt
+run_twice --durability=commit scratch/durability-commit.txt
+run_twice --durability=periodic --durability-interval=50 scratch/durability-periodic.txt
+run_twice --journal --durability=commit scratch/durability-journal.txt
+run_twice --mapped --durability=commit scratch/durability-mapped.txt
+
+# unique person properties
+run_twice --unique=phone,email scratch/unique.txt
+
+# server mode: a user connects and changes the persons, another lists them, then the server is stopped
+# and a console run lists the persons it saved; the output is compared to serverexpected.txt
+server_port=47831
+java -classpath ../bin seedu.addressbook.AddressBook --server=$server_port scratch/server.txt > scratch/server-output.txt &
+server_pid=$!
+until grep -q "Serving address book" scratch/server-output.txt 2> /dev/null || ! kill -0 $server_pid 2> /dev/null
+do
+    sleep 0.1
+done
+for input in storageinput.txt listinput.txt
+do
+    exec 3<> /dev/tcp/127.0.0.1/$server_port
+    cat $input >&3
+    cat <&3 >> scratch/serveractual.txt
+    exec 3<&-
+done
+kill $server_pid
+wait $server_pid 2> /dev/null
+cat scratch/server-output.txt >> scratch/serveractual.txt
+java -classpath ../bin seedu.addressbook.AddressBook scratch/server.txt < listinput.txt >> scratch/serveractual.txt
+
+# loading the storage file in the background, also in the other storage modes; whether a command has to
+# wait for loading to finish depends on timing, so the message saying so is left out of the output
+for args in "scratch/lazy.txt" "--journal scratch/lazy-journal.txt" "--mapped scratch/lazy-mapped.txt" \
+            "--async scratch/lazy-async.txt"
+do
+    for input in storageinput.txt listinput.txt
+    do
+        java -classpath ../bin seedu.addressbook.AddressBook --lazy $args < $input | grep -v "Still loading" >> actual.txt
+    done
+done
+
+# loading a large storage file in the background: a person added before loading finishes is saved even
+# though the input ends before loading does (checked below)
+awk 'BEGIN { for (i = 0; i < 500000; i++) printf "Person Number%d p/%d e/person%d@example.com\n", i, 10000000 + i, i }' \
+    > scratch/lazy-large.txt
+echo "add Zed Lazy p/95551234 e/zed@example.com" \
+    | java -classpath ../bin seedu.addressbook.AddressBook --lazy scratch/lazy-large.txt > /dev/null 2>&1
+
 # compare the output to the expected output
 diff actual.txt expected.txt
+result=$?
+diff scratch/serveractual.txt serverexpected.txt || result=1
+if ! grep -q "^Zed Lazy p/95551234 e/zed@example.com$" scratch/lazy-large.txt
+then
+    echo "Person added while loading in the background was not saved"
+    result=1
+fi
+
+# delete files written by the tests
+rm -rf scratch
 
-if [ $? -eq 0 ]
+if [ $result -eq 0 ]
 then
     echo "Test result: PASSED"
 else